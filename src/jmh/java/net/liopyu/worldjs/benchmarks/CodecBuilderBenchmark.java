@@ -0,0 +1,83 @@
+package net.liopyu.worldjs.benchmarks;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
+import net.liopyu.worldjs.builders.CodecBuilder;
+import net.liopyu.worldjs.builders.ConfigValues;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Decoding and encoding of a {@link CodecBuilder}-built config, as done for every custom feature/modifier on reload,
+ * and reading its values, as done by placement callbacks and steps
+ * <br><br>
+ * Only fields with plain DataFixerUpper codecs are used, as the registry backed ones (block states, providers etc.)
+ * would need the game to be bootstrapped
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CodecBuilderBenchmark {
+
+    private Codec<ConfigValues> codec;
+    private JsonObject json;
+    private ConfigValues values;
+    private int radiusSlot;
+
+    @Setup
+    public void setup() {
+        final CodecBuilder builder = new CodecBuilder();
+        builder.add("radius", builder.intValue())
+                .add("height", builder.longRange(0, 384))
+                .add("chance", builder.floatRange(0, 1))
+                .add("scale", builder.doubleValue())
+                .add("hollow", builder.bool())
+                .add("name", builder.string())
+                .addAsOptional("tag", builder.string())
+                .addAsOptional("spread", builder.intValue());
+        radiusSlot = builder.slotOf("radius");
+        codec = builder.build(Function.identity(), Function.identity());
+
+        json = new JsonObject();
+        json.addProperty("radius", 5);
+        json.addProperty("height", 12);
+        json.addProperty("chance", 0.25F);
+        json.addProperty("scale", 1.5);
+        json.addProperty("hollow", true);
+        json.addProperty("name", "boulder");
+        json.addProperty("tag", "boulder");
+
+        values = codec.parse(JsonOps.INSTANCE, json).getOrThrow(false, s -> {});
+    }
+
+    @Benchmark
+    public DataResult<ConfigValues> decode() {
+        return codec.parse(JsonOps.INSTANCE, json);
+    }
+
+    @Benchmark
+    public DataResult<JsonElement> encode() {
+        return codec.encodeStart(JsonOps.INSTANCE, values);
+    }
+
+    @Benchmark
+    public int getIntBySlot() {
+        return values.getInt(radiusSlot);
+    }
+
+    @Benchmark
+    public double getDoubleByName() {
+        return values.getDouble("scale");
+    }
+}
@@ -0,0 +1,106 @@
+package net.liopyu.worldjs.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.liopyu.worldjs.utils.CompactJson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the json of a typical ore feature with {@link CompactJson}, as done for every entry made in
+ * {@code WorldJSEvents.worldgenData}, against Gson's own {@link JsonObject#toString()}
+ * <br><br>
+ * The json is built by hand rather than encoded from worldgen objects, so no registries are needed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CompactJsonBenchmark {
+
+    private JsonObject configured;
+    private JsonObject placed;
+
+    @Setup
+    public void setup() {
+        final JsonArray targets = new JsonArray();
+        targets.add(target("minecraft:stone_ore_replaceables", "minecraft:iron_ore"));
+        targets.add(target("minecraft:deepslate_ore_replaceables", "minecraft:deepslate_iron_ore"));
+        final JsonObject config = new JsonObject();
+        config.addProperty("size", 9);
+        config.addProperty("discard_chance_on_air_exposure", 0.0);
+        config.add("targets", targets);
+        configured = new JsonObject();
+        configured.addProperty("type", "minecraft:ore");
+        configured.add("config", config);
+
+        final JsonArray placement = new JsonArray();
+        final JsonObject count = new JsonObject();
+        count.addProperty("type", "minecraft:count");
+        count.addProperty("count", 8);
+        placement.add(count);
+        placement.add(simple("minecraft:in_square"));
+        final JsonObject height = new JsonObject();
+        height.addProperty("type", "minecraft:height_range");
+        final JsonObject uniform = new JsonObject();
+        uniform.addProperty("type", "minecraft:uniform");
+        uniform.add("min_inclusive", anchor("above_bottom", 0));
+        uniform.add("max_inclusive", anchor("absolute", 64));
+        height.add("height", uniform);
+        placement.add(height);
+        placement.add(simple("minecraft:biome"));
+        placed = new JsonObject();
+        placed.addProperty("feature", "kubejs:benchmark_ore");
+        placed.add("placement", placement);
+    }
+
+    private static JsonObject target(String tag, String block) {
+        final JsonObject test = new JsonObject();
+        test.addProperty("predicate_type", "minecraft:tag_match");
+        test.addProperty("tag", tag);
+        final JsonObject state = new JsonObject();
+        state.addProperty("Name", block);
+        final JsonObject target = new JsonObject();
+        target.add("target", test);
+        target.add("state", state);
+        return target;
+    }
+
+    private static JsonObject simple(String type) {
+        final JsonObject json = new JsonObject();
+        json.addProperty("type", type);
+        return json;
+    }
+
+    private static JsonObject anchor(String type, int value) {
+        final JsonObject json = new JsonObject();
+        json.addProperty(type, value);
+        return json;
+    }
+
+    @Benchmark
+    public String configuredCompact() {
+        return CompactJson.write(configured);
+    }
+
+    @Benchmark
+    public String configuredToString() {
+        return configured.toString();
+    }
+
+    @Benchmark
+    public String placedCompact() {
+        return CompactJson.write(placed);
+    }
+
+    @Benchmark
+    public String placedToString() {
+        return placed.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package net.liopyu.worldjs.benchmarks;
+
+import net.liopyu.worldjs.builders.PlacementModifierTypeBuilder;
+import net.minecraft.core.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collecting positions in a {@link PlacementModifierTypeBuilder.PosAcceptor PosAcceptor} and streaming them back out,
+ * as done by every scripted placement modifier for every chunk
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PosAcceptorBenchmark {
+
+    @Param({"1", "16", "256"})
+    public int positions;
+
+    // Reused like the per-thread acceptor of KubeModifier
+    private final PlacementModifierTypeBuilder.PosAcceptor acceptor = new PlacementModifierTypeBuilder.PosAcceptor();
+
+    @Benchmark
+    public void acceptAndStream(Blackhole blackhole) {
+        acceptor.clear();
+        for (int i = 0 ; i < positions ; i++) {
+            acceptor.accept(new BlockPos(i & 15, i >> 4, 7));
+        }
+        acceptor.stream().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void acceptCoordinatesAndStream(Blackhole blackhole) {
+        acceptor.clear();
+        for (int i = 0 ; i < positions ; i++) {
+            acceptor.accept(i & 15, i >> 4, 7);
+        }
+        acceptor.stream().forEach(blackhole::consume);
+    }
+}
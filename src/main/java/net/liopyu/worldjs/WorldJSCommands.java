@@ -0,0 +1,67 @@
+package net.liopyu.worldjs;
+
+import com.mojang.brigadier.CommandDispatcher;
+import net.liopyu.worldjs.utils.PlacementStats;
+import net.liopyu.worldjs.utils.WorldgenDataCache;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraftforge.event.RegisterCommandsEvent;
+
+import java.util.List;
+
+public class WorldJSCommands {
+
+    private static final int MAX_LINES = 20;
+
+    public static void register(RegisterCommandsEvent event) {
+        register(event.getDispatcher());
+    }
+
+    /**
+     * <b>/worldjs stats</b> - Logs the placement statistics of every scripted feature and placement modifier and shows the slowest in chat
+     * <br>
+     * <b>/worldjs stats reset</b> - Resets all placement statistics
+     * <br>
+     * <b>/worldjs cache clear</b> - Deletes the cached worldgen data, so it is regenerated on the next reload
+     */
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal(WorldJS.MODID)
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("stats")
+                        .executes(ctx -> {
+                            final List<PlacementStats> stats = PlacementStats.snapshot();
+                            if (stats.isEmpty()) {
+                                ctx.getSource().sendSuccess(() -> Component.literal("No scripted features or placement modifiers have been placed yet"), false);
+                                return 0;
+                            }
+                            PlacementStats.logAll();
+                            for (int i = 0 ; i < Math.min(stats.size(), MAX_LINES) ; i++) {
+                                final String summary = stats.get(i).summary();
+                                ctx.getSource().sendSuccess(() -> Component.literal(summary), false);
+                            }
+                            if (stats.size() > MAX_LINES) {
+                                ctx.getSource().sendSuccess(() -> Component.literal("... and " + (stats.size() - MAX_LINES) + " more, see the log for the full list"), false);
+                            }
+                            return stats.size();
+                        })
+                        .then(Commands.literal("reset")
+                                .executes(ctx -> {
+                                    PlacementStats.resetAll();
+                                    ctx.getSource().sendSuccess(() -> Component.literal("Reset WorldJS placement statistics"), true);
+                                    return 1;
+                                })
+                        )
+                )
+                .then(Commands.literal("cache")
+                        .then(Commands.literal("clear")
+                                .executes(ctx -> {
+                                    final boolean cleared = WorldgenDataCache.clear();
+                                    ctx.getSource().sendSuccess(() -> Component.literal(cleared ? "Cleared the WorldJS worldgen data cache" : "There is no WorldJS worldgen data cache to clear"), true);
+                                    return cleared ? 1 : 0;
+                                })
+                        )
+                )
+        );
+    }
+}
@@ -10,12 +10,21 @@ import dev.latvian.mods.kubejs.util.ClassFilter;
 import dev.latvian.mods.rhino.util.wrap.TypeWrappers;
 import net.liopyu.worldjs.builders.FeatureBuilder;
 import net.liopyu.worldjs.builders.PlacementModifierTypeBuilder;
+import net.liopyu.worldjs.builders.PlacementWalker;
 import net.liopyu.worldjs.events.EventHandlers;
 import net.liopyu.worldjs.events.forge.AddCFeatureMethodsEvent;
 import net.liopyu.worldjs.events.forge.AddPFeatureMethodsEvent;
 import net.liopyu.worldjs.internal.tests.TestCFeatureMethodHolder;
 import net.liopyu.worldjs.internal.tests.TestPFeatureMethodHolder;
+import net.liopyu.worldjs.utils.DataProfiler;
+import net.liopyu.worldjs.utils.DataUtils;
+import net.liopyu.worldjs.utils.EncodeCache;
+import net.liopyu.worldjs.utils.CompactJson;
+import net.liopyu.worldjs.utils.OreTable;
+import net.liopyu.worldjs.utils.PlacementStats;
+import net.liopyu.worldjs.utils.ScriptExecution;
 import net.liopyu.worldjs.utils.WorldJSTypeWrappers;
+import net.liopyu.worldjs.utils.WorldgenDataCache;
 import net.minecraft.util.valueproviders.FloatProvider;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.levelgen.VerticalAnchor;
@@ -25,6 +34,8 @@ import net.minecraft.world.level.levelgen.heightproviders.HeightProvider;
 import net.minecraft.world.level.levelgen.synth.NormalNoise;
 import net.minecraft.world.level.material.FluidState;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.minecraftforge.eventbus.api.EventPriority;
 
 public class WorldJSPlugin extends KubeJSPlugin {
@@ -39,6 +50,8 @@ public class WorldJSPlugin extends KubeJSPlugin {
                 event.add("test", TestPFeatureMethodHolder.INSTANCE);
             });
         }
+        MinecraftForge.EVENT_BUS.addListener(EventPriority.NORMAL, false, RegisterCommandsEvent.class, WorldJSCommands::register);
+        MinecraftForge.EVENT_BUS.addListener(EventPriority.NORMAL, false, ServerStoppingEvent.class, event -> PlacementStats.logAll());
         RegistryInfo.PLACEMENT_MODIFIER_TYPE.addType("worldjs:placement_modifier", PlacementModifierTypeBuilder.class, PlacementModifierTypeBuilder::new);
         RegistryInfo.FEATURE.addType("worldjs:feature", FeatureBuilder.class, FeatureBuilder::new);
     }
@@ -46,6 +59,8 @@ public class WorldJSPlugin extends KubeJSPlugin {
     @Override
     public void registerBindings(BindingsEvent event) {
         event.add("WorldJS", WorldJSBindings.class);
+        // Bindings are registered every time the scripts of a type are (re)loaded
+        ScriptExecution.loaded(event.getType(), event.manager);
         if (event.getType().isServer()) {
             // This is here because dumb stuff relating to the server script manager not existing until the server starts
             // Oh, the pain it took to get to here in KubeJS TFC, if only this method had been I dunno, documented!
@@ -59,6 +74,16 @@ public class WorldJSPlugin extends KubeJSPlugin {
         filter.deny(EventHandlers.class);
         filter.deny(WorldJSPlugin.class);
         filter.deny(WorldJS.class);
+        filter.deny(WorldJSCommands.class);
+        filter.deny(PlacementStats.class);
+        filter.deny(ScriptExecution.class);
+        filter.deny(PlacementWalker.class);
+        filter.deny(WorldgenDataCache.class);
+        filter.deny(EncodeCache.class);
+        filter.deny(DataUtils.Shared.class);
+        filter.deny(CompactJson.class);
+        filter.deny(OreTable.class);
+        filter.deny(DataProfiler.class);
         filter.deny("net.liopyu.worldjs.internal");
         filter.deny("net.liopyu.worldjs.mixin"); // In case we ever do so
     }
@@ -70,13 +95,13 @@ public class WorldJSPlugin extends KubeJSPlugin {
 
     @Override
     public void registerTypeWrappers(ScriptType type, TypeWrappers typeWrappers) {
-        typeWrappers.register(FloatProvider.class, WorldJSTypeWrappers::floatProvider);
-        typeWrappers.register(BlockState.class, WorldJSTypeWrappers::blockState);
-        typeWrappers.register(BlockPredicate.class, WorldJSTypeWrappers::blockPredicate);
-        typeWrappers.register(HeightProvider.class, WorldJSTypeWrappers::heightProvider);
-        typeWrappers.register(VerticalAnchor.class, WorldJSTypeWrappers::verticalAnchor);
-        typeWrappers.register(BlockStateProvider.class, WorldJSTypeWrappers::blockStateProvider);
-        typeWrappers.register(NormalNoise.NoiseParameters.class, WorldJSTypeWrappers::noiseParameters);
-        typeWrappers.register(FluidState.class, WorldJSTypeWrappers::fluidState);
+        typeWrappers.register(FloatProvider.class, DataProfiler.timed("FloatProvider", WorldJSTypeWrappers::floatProvider));
+        typeWrappers.register(BlockState.class, DataProfiler.timed("BlockState", WorldJSTypeWrappers::blockState));
+        typeWrappers.register(BlockPredicate.class, DataProfiler.timed("BlockPredicate", WorldJSTypeWrappers::blockPredicate));
+        typeWrappers.register(HeightProvider.class, DataProfiler.timed("HeightProvider", WorldJSTypeWrappers::heightProvider));
+        typeWrappers.register(VerticalAnchor.class, DataProfiler.timed("VerticalAnchor", WorldJSTypeWrappers::verticalAnchor));
+        typeWrappers.register(BlockStateProvider.class, DataProfiler.timed("BlockStateProvider", WorldJSTypeWrappers::blockStateProvider));
+        typeWrappers.register(NormalNoise.NoiseParameters.class, DataProfiler.timed("NoiseParameters", WorldJSTypeWrappers::noiseParameters));
+        typeWrappers.register(FluidState.class, DataProfiler.timed("FluidState", WorldJSTypeWrappers::fluidState));
     }
 }
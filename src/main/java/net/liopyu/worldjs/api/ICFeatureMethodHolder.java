@@ -21,7 +21,7 @@ public interface ICFeatureMethodHolder {
     default void add(ResourceLocation id, JsonObject data) {
         final JsonDataEventJS event = DataUtils.getCurrentJsonDataEventJS();
         if (event != null) {
-            event.add(id, data);
+            event.profileAddon(this, () -> event.add(id, data));
         } else {
             // Put a breakpoint here
             WorldJS.LOGGER.warn("Attempted to add a feature json while there was no active {}: {} - {} | Skipping", JsonDataEventJS.class.getName(), id, data);
@@ -41,7 +41,7 @@ public interface ICFeatureMethodHolder {
     default void finishFeature(String name, String type, JsonObject config, Placement placement) {
         final JsonDataEventJS event = DataUtils.getCurrentJsonDataEventJS();
         if (event != null) {
-            event.finishFeature(name, type, config, placement);
+            event.profileAddon(this, () -> event.finishFeature(name, type, config, placement));
         } else {
             // Put a breakpoint here
             WorldJS.LOGGER.warn("Attempted to add a feature json while there was no active {}: {} - Type: {} Config: {} | Skipping!", JsonDataEventJS.class.getName(), name, type, config);
@@ -58,7 +58,7 @@ public interface ICFeatureMethodHolder {
     default void finishFeature(String name, JsonObject configured, Placement placement) {
         final JsonDataEventJS event = DataUtils.getCurrentJsonDataEventJS();
         if (event != null) {
-            event.finishFeature(name, configured, placement);
+            event.profileAddon(this, () -> event.finishFeature(name, configured, placement));
         } else {
             // Put a breakpoint here
             WorldJS.LOGGER.warn("Attempted to add a feature json while there was no active {}: {} - {} | Skipping!", JsonDataEventJS.class.getName(), name, configured);
@@ -77,7 +77,7 @@ public interface ICFeatureMethodHolder {
     default void finishFeature(String name, String type, JsonObject config) {
         final JsonDataEventJS event = DataUtils.getCurrentJsonDataEventJS();
         if (event != null) {
-            event.finishFeature(name, type, config);
+            event.profileAddon(this, () -> event.finishFeature(name, type, config));
         } else {
             // Put a breakpoint here
             WorldJS.LOGGER.warn("Attempted to add a configured feature json while there was no active {}: {} - Type: {} Config: {} | Skipping!", JsonDataEventJS.class.getName(), name, type, config);
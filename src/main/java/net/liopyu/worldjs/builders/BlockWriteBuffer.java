@@ -0,0 +1,138 @@
+package net.liopyu.worldjs.builders;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.WorldGenLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.Arrays;
+
+/**
+ * Collects the block writes of a scripted feature so they can be applied in one go once its placement callback returns
+ * <br><br>
+ * Writes are applied grouped by chunk section, in the order the sections were first written to, and in the order they
+ * were made within each section, so later writes to the same position still win. Buffered writes are not visible
+ * through {@link FeatureBuilder.BasePlaceCtx#level()} until they have been flushed
+ */
+public class BlockWriteBuffer {
+
+    private static final int DEFAULT_FLAGS = Block.UPDATE_ALL;
+    // Skips neighbor and shape updates, see Level#setBlock. WorldGenRegion ignores flags, so this only applies to live levels
+    private static final int NO_UPDATE_FLAGS = Block.UPDATE_CLIENTS | Block.UPDATE_KNOWN_SHAPE;
+
+    private long[] positions = new long[64];
+    private BlockState[] states = new BlockState[64];
+    private int size;
+    private boolean skipUpdates;
+
+    // Scratch space for flushing, kept around as buffers are reused per worldgen thread
+    private long[] order = new long[0];
+    private final Long2IntOpenHashMap sectionIds = new Long2IntOpenHashMap();
+    private final BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+
+    public BlockWriteBuffer() {
+        sectionIds.defaultReturnValue(-1);
+    }
+
+    /**
+     * Buffers setting the block at the given position to the given state
+     */
+    public BlockWriteBuffer set(int x, int y, int z, BlockState state) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            states = Arrays.copyOf(states, size * 2);
+        }
+        positions[size] = BlockPos.asLong(x, y, z);
+        states[size] = state;
+        size++;
+        return this;
+    }
+
+    public BlockWriteBuffer set(BlockPos pos, BlockState state) {
+        return set(pos.getX(), pos.getY(), pos.getZ(), state);
+    }
+
+    /**
+     * If neighbor and shape updates should be skipped when the buffer is flushed, {@code false} by default
+     * <br><br>
+     * This has no effect during world generation, as {@code WorldGenRegion#setBlock} ignores update flags and never
+     * sends neighbor updates. It only matters when the feature is placed into a live level, such as by {@code /place feature}.
+     * Only use this for blocks which do not depend on their neighbors, otherwise they may be left in invalid states
+     */
+    public BlockWriteBuffer skipUpdates(boolean skipUpdates) {
+        this.skipUpdates = skipUpdates;
+        return this;
+    }
+
+    /**
+     * @return The number of writes currently buffered
+     */
+    public int size() {
+        return size;
+    }
+
+    long positionAt(int index) {
+        return positions[index];
+    }
+
+    BlockState stateAt(int index) {
+        return states[index];
+    }
+
+    boolean skipsUpdates() {
+        return skipUpdates;
+    }
+
+    /**
+     * Drops every buffered write without applying it
+     */
+    public void discard() {
+        Arrays.fill(states, 0, size, null);
+        size = 0;
+        skipUpdates = false;
+    }
+
+    /**
+     * Applies every buffered write to the level grouped by chunk section and empties the buffer
+     * @return If any block was changed
+     */
+    public boolean flush(WorldGenLevel level) {
+        if (size == 0) {
+            return false;
+        }
+        final int flags = skipUpdates ? NO_UPDATE_FLAGS : DEFAULT_FLAGS;
+        boolean changed = false;
+        if (size == 1) {
+            changed = level.setBlock(cursor.set(positions[0]), states[0], flags);
+        } else {
+            // Sort keys are the section's first-seen id in the upper half and the write's index in the lower half
+            if (order.length < size) {
+                order = new long[positions.length];
+            }
+            sectionIds.clear();
+            for (int i = 0 ; i < size ; i++) {
+                final long pos = positions[i];
+                final long section = SectionPos.asLong(
+                        SectionPos.blockToSectionCoord(BlockPos.getX(pos)),
+                        SectionPos.blockToSectionCoord(BlockPos.getY(pos)),
+                        SectionPos.blockToSectionCoord(BlockPos.getZ(pos))
+                );
+                int id = sectionIds.get(section);
+                if (id == -1) {
+                    id = sectionIds.size();
+                    sectionIds.put(section, id);
+                }
+                order[i] = ((long) id << 32) | i;
+            }
+            Arrays.sort(order, 0, size);
+            for (int i = 0 ; i < size ; i++) {
+                final int index = (int) order[i];
+                changed |= level.setBlock(cursor.set(positions[index]), states[index], flags);
+            }
+        }
+        discard();
+        return changed;
+    }
+}
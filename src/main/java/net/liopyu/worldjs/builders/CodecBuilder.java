@@ -1,13 +1,15 @@
 package net.liopyu.worldjs.builders;
 
 import com.mojang.datafixers.util.Either;
-import com.mojang.datafixers.util.Pair;
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
 import com.mojang.serialization.DynamicOps;
 import com.mojang.serialization.MapCodec;
 import com.mojang.serialization.MapLike;
+import com.mojang.serialization.RecordBuilder;
 import dev.latvian.mods.kubejs.util.UtilsJS;
 import dev.latvian.mods.rhino.util.HideFromJS;
+import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.core.Holder;
@@ -29,28 +31,56 @@ import net.minecraft.world.level.material.Fluid;
 import net.minecraft.world.level.material.FluidState;
 import org.joml.Vector3f;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 // TODO: Document. Consider: rename #add & #addAsOptional to #fieldOf & optionalFieldOf?
 public class CodecBuilder {
 
-    private final Map<String, MapCodec<?>> serializers = new HashMap<>();
+    // Insertion ordered, the order of the fields determines their slots in ConfigValues
+    private final Map<String, Field> serializers = new LinkedHashMap<>();
+    // Codecs which always decode to a number, the fields using them are kept unboxed in ConfigValues
+    private final Set<Codec<?>> numberCodecs = Util.make(Collections.newSetFromMap(new IdentityHashMap<>()), set ->
+            Collections.addAll(set, Codec.BYTE, Codec.SHORT, Codec.INT, Codec.LONG, Codec.FLOAT, Codec.DOUBLE)
+    );
 
     public CodecBuilder add(String name, Codec<?> codec) {
-        return addRaw(name, codec.fieldOf(name));
+        return addRaw(name, new Field(codec, false));
     }
 
     public CodecBuilder addAsOptional(String name, Codec<?> codec) {
-        return addRaw(name, codec.optionalFieldOf(name));
+        return addRaw(name, new Field(codec, true));
     }
 
-    private CodecBuilder addRaw(String name, MapCodec<?> mapCodec) {
-        serializers.put(name, mapCodec);
+    private CodecBuilder addRaw(String name, Field field) {
+        serializers.put(name, field);
         return this;
     }
 
+    /**
+     * @return The slot of the given field in the built {@link ConfigValues}, or -1 if no such field has been added.
+     * Fields are assigned slots in the order they are first added
+     */
+    public int slotOf(String name) {
+        int slot = 0;
+        for (String field : serializers.keySet()) {
+            if (field.equals(name)) {
+                return slot;
+            }
+            slot++;
+        }
+        return -1;
+    }
+
     public Codec<Boolean> bool() {
         return Codec.BOOL;
     }
@@ -72,21 +102,26 @@ public class CodecBuilder {
     }
 
     public Codec<Integer> intRange(int min, int max) {
-        return ExtraCodecs.intRange(min, max);
+        return number(ExtraCodecs.intRange(min, max));
     }
 
     public Codec<Long> longRange(long min, long max) {
         final var checker = Codec.checkRange(min, max);
-        return Codec.LONG.flatXmap(checker, checker);
+        return number(Codec.LONG.flatXmap(checker, checker));
     }
 
     public Codec<Float> floatRange(float min, float max) {
-        return Codec.floatRange(min, max);
+        return number(Codec.floatRange(min, max));
     }
 
     public Codec<Double> doubleRange(double min, double max) {
         final var checker = Codec.checkRange(min, max);
-        return Codec.DOUBLE.flatXmap(checker, checker);
+        return number(Codec.DOUBLE.flatXmap(checker, checker));
+    }
+
+    private <N extends Number> Codec<N> number(Codec<N> codec) {
+        numberCodecs.add(codec);
+        return codec;
     }
 
     public Codec<String> string() {
@@ -193,25 +228,107 @@ public class CodecBuilder {
      * codecs), otherwise the codec properties must be put inside a {@code "value": {}} object
      */
     @HideFromJS
-    public <A> Codec<A> build(Function<Map<String, Object>, A> to, Function<A, Map<String, Object>> from) {
-        // Do not stare into the darkness, it will leave you broken and afraid.
-        // Do not think about the monster under the bed, it will take all you ever loved.
-        // Do not worry, it works. So long as that is so, you can quietly ignore this in bliss.
-        MapCodec<Map<String, Object>> codec = MapCodec.unit(HashMap::new);
-        for (Map.Entry<String, MapCodec<?>> entry : serializers.entrySet()) {
-            codec = codec.dependent(
-                    entry.getValue(),
-                    map -> Pair.of(
-                            UtilsJS.cast(map.get(entry.getKey())),
-                            UtilsJS.cast(entry.getValue())
-                    ),
-                    (map, val) -> {
-                        map.put(entry.getKey(), val);
-                        return map;
-                    });
+    public <A> Codec<A> build(Function<ConfigValues, A> to, Function<A, ConfigValues> from) {
+        final Field[] fields = serializers.values().toArray(new Field[0]);
+        final boolean[] numeric = new boolean[fields.length];
+        for (int i = 0 ; i < fields.length ; i++) {
+            numeric[i] = numberCodecs.contains(fields[i].codec);
         }
+        final MapCodec<ConfigValues> codec = new FlatMapCodec(new ConfigValues.Layout(serializers.keySet(), numeric), fields);
         // Setting the lifecycle to stable prevents the experimental features screen from showing up
         // Arguably, this is highly experimental, but players needn't know that
         return codec.stable().xmap(to, from).codec();
     }
+
+    private record Field(Codec<?> codec, boolean optional) {}
+
+    /**
+     * Decodes every field of a {@link CodecBuilder} in a single pass over the input map, instead of walking one nested
+     * {@link MapCodec#dependent dependent} codec per field
+     * <br><br>
+     * Mirrors {@link Codec#fieldOf(String)} and {@link Codec#optionalFieldOf(String)}: missing required fields are an
+     * error, while optional fields which are missing or fail to parse decode to an empty {@link Optional}
+     */
+    private static class FlatMapCodec extends MapCodec<ConfigValues> {
+
+        private final ConfigValues.Layout layout;
+        private final Field[] fields;
+
+        private FlatMapCodec(ConfigValues.Layout layout, Field[] fields) {
+            this.layout = layout;
+            this.fields = fields;
+        }
+
+        @Override
+        public <T> Stream<T> keys(DynamicOps<T> ops) {
+            final List<T> keys = new ArrayList<>(fields.length);
+            for (int i = 0 ; i < fields.length ; i++) {
+                keys.add(ops.createString(layout.name(i)));
+            }
+            return keys.stream();
+        }
+
+        @Override
+        public <T> DataResult<ConfigValues> decode(DynamicOps<T> ops, MapLike<T> input) {
+            final Object[] inputs = new Object[fields.length];
+            input.entries().forEach(entry -> ops.getStringValue(entry.getFirst()).result().ifPresent(key -> {
+                final int slot = layout.slotOf(key);
+                if (slot != -1) {
+                    inputs[slot] = entry.getSecond();
+                }
+            }));
+
+            final Object[] values = new Object[fields.length];
+            List<String> errors = null;
+            for (int i = 0 ; i < fields.length ; i++) {
+                final Field field = fields[i];
+                final T value = UtilsJS.cast(inputs[i]);
+                if (value == null) {
+                    if (field.optional) {
+                        values[i] = Optional.empty();
+                    } else {
+                        if (errors == null) errors = new ArrayList<>();
+                        errors.add("No key " + layout.name(i) + " in " + input);
+                    }
+                    continue;
+                }
+                final DataResult<?> parsed = field.codec.parse(ops, value);
+                final Optional<?> result = parsed.result();
+                if (field.optional) {
+                    values[i] = result.isPresent() ? Optional.of(result.get()) : Optional.empty();
+                } else if (result.isPresent()) {
+                    values[i] = result.get();
+                } else {
+                    if (errors == null) errors = new ArrayList<>();
+                    errors.add(layout.name(i) + ": " + parsed.error().map(DataResult.PartialResult::message).orElse("Unknown error"));
+                }
+            }
+
+            if (errors != null) {
+                final String message = String.join("; ", errors);
+                return DataResult.error(() -> message);
+            }
+            return DataResult.success(new ConfigValues(layout, values));
+        }
+
+        @Override
+        public <T> RecordBuilder<T> encode(ConfigValues input, DynamicOps<T> ops, RecordBuilder<T> prefix) {
+            for (int i = 0 ; i < fields.length ; i++) {
+                final Codec<Object> codec = UtilsJS.cast(fields[i].codec);
+                Object value = input.get(i);
+                if (fields[i].optional) {
+                    value = value instanceof Optional<?> optional ? optional.orElse(null) : value;
+                }
+                if (value != null) {
+                    prefix.add(layout.name(i), codec.encodeStart(ops, value));
+                }
+            }
+            return prefix;
+        }
+
+        @Override
+        public String toString() {
+            return "WorldJSConfig" + Arrays.toString(fields);
+        }
+    }
 }
@@ -0,0 +1,231 @@
+package net.liopyu.worldjs.builders;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The decoded configuration of a scripted feature or placement modifier
+ * <br><br>
+ * Values are held in an array whose slots are fixed by the {@link CodecBuilder} when the feature or placement modifier
+ * type is built, see {@link CodecBuilder#slotOf(String)}. Fields using one of the builder's number codecs are
+ * additionally kept unboxed, so the typed getters neither hash the field name when given a slot nor unbox
+ * <br><br>
+ * This is still a read-only {@link Map} of field names to values, so scripts may keep using {@code config.get('name')}.
+ * Optional fields hold an {@link Optional}, the typed getters look through it and throw if it is empty, as they do
+ * when the field holds a value of another type
+ */
+public final class ConfigValues extends AbstractMap<String, Object> {
+
+    private final Layout layout;
+    private final Object[] values;
+    @Nullable
+    private final double[] numbers;
+
+    public ConfigValues(Layout layout, Object[] values) {
+        this.layout = layout;
+        this.values = values;
+        if (layout.numberCount == 0) {
+            this.numbers = null;
+        } else {
+            this.numbers = new double[layout.numberCount];
+            for (int i = 0 ; i < values.length ; i++) {
+                final int index = layout.numberIndices[i];
+                if (index != -1) {
+                    // Empty optionals are stored as NaN, which the getters then tell apart from an actual NaN
+                    numbers[index] = unwrap(values[i]) instanceof Number number ? number.doubleValue() : Double.NaN;
+                }
+            }
+        }
+    }
+
+    public Layout layout() {
+        return layout;
+    }
+
+    @Nullable
+    public Object get(int slot) {
+        return values[slot];
+    }
+
+    public int getInt(int slot) {
+        return (int) getDouble(slot);
+    }
+
+    public int getInt(String name) {
+        return getInt(layout.slotOrThrow(name));
+    }
+
+    public long getLong(int slot) {
+        return number(slot).longValue();
+    }
+
+    public long getLong(String name) {
+        return getLong(layout.slotOrThrow(name));
+    }
+
+    public double getDouble(int slot) {
+        final int index = layout.numberIndices[slot];
+        if (index != -1) {
+            final double value = numbers[index];
+            if (!Double.isNaN(value)) {
+                return value;
+            }
+        }
+        return number(slot).doubleValue();
+    }
+
+    public double getDouble(String name) {
+        return getDouble(layout.slotOrThrow(name));
+    }
+
+    public float getFloat(int slot) {
+        return (float) getDouble(slot);
+    }
+
+    public float getFloat(String name) {
+        return getFloat(layout.slotOrThrow(name));
+    }
+
+    public boolean getBoolean(int slot) {
+        final Object value = unwrap(values[slot]);
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        throw mismatch(slot, value, "a boolean");
+    }
+
+    public boolean getBoolean(String name) {
+        return getBoolean(layout.slotOrThrow(name));
+    }
+
+    private Number number(int slot) {
+        final Object value = unwrap(values[slot]);
+        if (value instanceof Number number) {
+            return number;
+        }
+        throw mismatch(slot, value, "a number");
+    }
+
+    private IllegalArgumentException mismatch(int slot, @Nullable Object value, String expected) {
+        if (value == null) {
+            return new IllegalArgumentException("Config field '" + layout.name(slot) + "' has no value, expected " + expected);
+        }
+        return new IllegalArgumentException("Config field '" + layout.name(slot) + "' holds " + value + ", expected " + expected);
+    }
+
+    @Nullable
+    private static Object unwrap(@Nullable Object value) {
+        return value instanceof Optional<?> optional ? optional.orElse(null) : value;
+    }
+
+    @Override
+    @Nullable
+    public Object get(Object key) {
+        final int slot = key instanceof String name ? layout.slotOf(name) : -1;
+        return slot == -1 ? null : values[slot];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String name && layout.slotOf(name) != -1;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int slot = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (slot >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        final Entry<String, Object> entry = new SimpleImmutableEntry<>(layout.names[slot], values[slot]);
+                        slot++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+    /**
+     * The fixed mapping of field names to slots of a {@link CodecBuilder}
+     */
+    public static final class Layout {
+
+        private final String[] names;
+        private final Object2IntOpenHashMap<String> slots;
+        // The index of each slot in the unboxed numbers, or -1 for fields which aren't numbers
+        private final int[] numberIndices;
+        private final int numberCount;
+
+        /**
+         * @param numeric Whether the field of each slot always decodes to a {@link Number}
+         */
+        public Layout(Collection<String> names, boolean[] numeric) {
+            this.names = names.toArray(new String[0]);
+            this.slots = new Object2IntOpenHashMap<>(this.names.length);
+            this.slots.defaultReturnValue(-1);
+            this.numberIndices = new int[this.names.length];
+            int numbers = 0;
+            for (int i = 0 ; i < this.names.length ; i++) {
+                slots.put(this.names[i], i);
+                numberIndices[i] = numeric[i] ? numbers++ : -1;
+            }
+            this.numberCount = numbers;
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        public String name(int slot) {
+            return names[slot];
+        }
+
+        /**
+         * @return The slot of the given field, or -1 if there is no such field
+         */
+        public int slotOf(String name) {
+            return slots.getInt(name);
+        }
+
+        public int slotOrThrow(String name) {
+            final int slot = slots.getInt(name);
+            if (slot == -1) {
+                throw new IllegalArgumentException("No config field named '" + name + "', expected one of " + Arrays.toString(names));
+            }
+            return slot;
+        }
+
+    }
+}
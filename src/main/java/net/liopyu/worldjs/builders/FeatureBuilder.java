@@ -3,17 +3,30 @@ package net.liopyu.worldjs.builders;
 import com.mojang.serialization.Codec;
 import dev.latvian.mods.kubejs.registry.BuilderBase;
 import dev.latvian.mods.kubejs.registry.RegistryInfo;
+import dev.latvian.mods.kubejs.script.ScriptType;
+import dev.latvian.mods.rhino.Function;
+import dev.latvian.mods.rhino.util.HideFromJS;
+import net.liopyu.worldjs.utils.PlacementStats;
+import net.liopyu.worldjs.utils.ScriptExecution;
 import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.Mth;
 import net.minecraft.util.RandomSource;
 import net.minecraft.world.level.WorldGenLevel;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.ChunkGenerator;
+import net.minecraft.world.level.levelgen.blockpredicates.BlockPredicate;
 import net.minecraft.world.level.levelgen.feature.ConfiguredFeature;
 import net.minecraft.world.level.levelgen.feature.Feature;
 import net.minecraft.world.level.levelgen.feature.FeaturePlaceContext;
 import net.minecraft.world.level.levelgen.feature.configurations.FeatureConfiguration;
+import net.minecraft.world.level.levelgen.feature.stateproviders.BlockStateProvider;
+import net.minecraft.world.level.levelgen.feature.stateproviders.SimpleStateProvider;
+import net.minecraft.world.level.levelgen.placement.PlacedFeature;
+import net.minecraft.world.level.levelgen.placement.PlacementContext;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -21,20 +34,91 @@ import java.util.function.Predicate;
 // TODO: Document
 public class FeatureBuilder extends BuilderBase<FeatureBuilder.KubeFeature> {
 
+    // A single sample can't tell a deterministic shape from one that happened to come out the same once
+    private static final int DEFAULT_STENCIL_SAMPLES = 3;
+
     public transient final CodecBuilder codecBuilder;
-    public transient Predicate<PlaceCtx> placement;
+    public transient Placer placement;
+    @Nullable
+    public transient BatchPlacer batchPlacement;
+    public transient int stencilVariants;
+    public transient int stencilSamples;
 
     public FeatureBuilder(ResourceLocation i) {
         super(i);
         codecBuilder = new CodecBuilder();
         placement = ctx -> true;
+        batchPlacement = null;
+        stencilVariants = 0;
+        stencilSamples = DEFAULT_STENCIL_SAMPLES;
+    }
+
+    /**
+     * Sets the callback run for every origin the feature is placed at, see {@link ScriptExecution} for what it may do
+     */
+    public FeatureBuilder placement(Function placement) {
+        // Registry builders are only made by startup scripts
+        final ScriptExecution.Callback callback = ScriptExecution.bind(ScriptType.STARTUP, placement);
+        this.placement = ctx -> callback.callBoolean(ctx);
+        return this;
     }
 
-    public FeatureBuilder placement(Predicate<PlaceCtx> placement) {
+    @HideFromJS
+    public FeatureBuilder placement(Placer placement) {
         this.placement = placement;
         return this;
     }
 
+    /**
+     * Sets a callback which receives every origin produced by a placed feature's modifiers in one call, instead of
+     * being called once per origin like {@link #placement(Placer)}
+     * <br><br>
+     * When set, this is used in place of the per origin callback whenever the feature is placed through a placed feature.
+     * All origins are generated before the callback is run, so the random source is consumed in a different order than
+     * with per origin placement
+     */
+    public FeatureBuilder placementBatch(Function batchPlacement) {
+        final ScriptExecution.Callback callback = ScriptExecution.bind(ScriptType.STARTUP, batchPlacement);
+        this.batchPlacement = ctx -> callback.callBoolean(ctx);
+        return this;
+    }
+
+    @HideFromJS
+    public FeatureBuilder placementBatch(BatchPlacer batchPlacement) {
+        this.batchPlacement = batchPlacement;
+        return this;
+    }
+
+    /**
+     * Enables stencil caching for features whose placement always writes the same blocks relative to its origin for a
+     * given config and variant
+     * <br><br>
+     * Each placement picks a variant in the range [0, variants) using the placement's random source, which the
+     * placement callback can read through {@link PlaceCtx#variant()}. The writes of the first {@code samples} placements
+     * of each variant are recorded, and if they all match, every later placement of that variant replays them natively
+     * without calling the script. Variants whose samples differ keep calling the script
+     * <br><br>
+     * Only writes made through the placement context ({@link BasePlaceCtx#setBlock(BlockPos, BlockState)}, the fill
+     * methods or {@link BasePlaceCtx#buffer()}) are recorded, and replayed placements do not consume the random source
+     * the way the script would have. A variant is never cached once one of its placements reads the level, chunk
+     * generator or random source from the context, or fills with a target predicate or a state provider other than a
+     * single block state, as its output then depends on more than the config and variant. Batched placement is never cached
+     * @param variants The number of shape variants per configured feature
+     * @param samples The number of matching placements required before a variant is replayed
+     */
+    public FeatureBuilder stencil(int variants, int samples) {
+        this.stencilVariants = variants;
+        this.stencilSamples = samples;
+        return this;
+    }
+
+    /**
+     * Enables stencil caching with the default of 3 samples per variant, see {@link #stencil(int, int)}
+     */
+    public FeatureBuilder stencil(int variants) {
+        return stencil(variants, DEFAULT_STENCIL_SAMPLES);
+    }
+
     public FeatureBuilder configuration(Consumer<CodecBuilder> builder) {
         builder.accept(codecBuilder);
         return this;
@@ -47,51 +131,514 @@ public class FeatureBuilder extends BuilderBase<FeatureBuilder.KubeFeature> {
 
     @Override
     public KubeFeature createObject() {
-        return new KubeFeature(codecBuilder.build(KubeFeatureConfig::new, KubeFeatureConfig::values), placement);
+        return new KubeFeature(
+                id,
+                codecBuilder.build(KubeFeatureConfig::new, KubeFeatureConfig::values),
+                placement,
+                batchPlacement,
+                stencilVariants > 0 ? new StencilCache(stencilVariants, stencilSamples) : null
+        );
     }
 
     public static class KubeFeature extends Feature<KubeFeatureConfig> {
 
-        private final Predicate<PlaceCtx> placement;
+        // Placement contexts are reused per worldgen thread, a new one is only made when a feature is placed from inside another's placement
+        private static final ThreadLocal<PlaceCtx> CONTEXTS = ThreadLocal.withInitial(PlaceCtx::new);
+        private static final ThreadLocal<BatchPlaceCtx> BATCH_CONTEXTS = ThreadLocal.withInitial(BatchPlaceCtx::new);
 
-        public KubeFeature(Codec<KubeFeatureConfig> pCodec, Predicate<PlaceCtx> placement) {
+        private final Placer placement;
+        @Nullable
+        private final BatchPlacer batchPlacement;
+        @Nullable
+        private final StencilCache stencils;
+        private final PlacementStats stats;
+
+        public KubeFeature(ResourceLocation id, Codec<KubeFeatureConfig> pCodec, Placer placement, @Nullable BatchPlacer batchPlacement, @Nullable StencilCache stencils) {
             super(pCodec);
             this.placement = placement;
+            this.batchPlacement = batchPlacement;
+            this.stencils = stencils;
+            this.stats = PlacementStats.feature(id);
+        }
+
+        /**
+         * Overridden so that placing a configured feature does not have to allocate a {@link FeaturePlaceContext}
+         */
+        @Override
+        public boolean place(KubeFeatureConfig pConfig, WorldGenLevel pLevel, ChunkGenerator pChunkGenerator, RandomSource pRandom, BlockPos pOrigin) {
+            return pLevel.ensureCanWrite(pOrigin) && place(Optional.empty(), pLevel, pChunkGenerator, pRandom, pOrigin, pConfig);
         }
 
         @Override
         public boolean place(FeaturePlaceContext<KubeFeatureConfig> ctx) {
-            return placement.test(new PlaceCtx(ctx));
+            return place(ctx.topFeature(), ctx.level(), ctx.chunkGenerator(), ctx.random(), ctx.origin(), ctx.config());
+        }
+
+        private boolean place(Optional<ConfiguredFeature<?, ?>> topFeature, WorldGenLevel level, ChunkGenerator generator, RandomSource random, BlockPos origin, KubeFeatureConfig config) {
+            PlaceCtx ctx = CONTEXTS.get();
+            if (ctx.level != null) {
+                ctx = new PlaceCtx();
+            }
+            ctx.set(topFeature, level, generator, random, origin, config);
+            final PlacementStats.Timer timer = PlacementStats.startTimer();
+            try {
+                StencilCache.Slot slot = null;
+                if (stencils != null) {
+                    ctx.variant = random.nextInt(stencils.variants());
+                    slot = stencils.slot(config, ctx.variant);
+                    final StencilCache.Stencil stencil = slot.stencil();
+                    if (stencil != null) {
+                        stencil.replay(ctx.buffer(), origin);
+                        ctx.flush();
+                        stats.record(timer.stop(), stencil.placed(), 0);
+                        return stencil.placed();
+                    }
+                }
+                final boolean placed = placement.test(ctx);
+                if (slot != null && slot.isRecording()) {
+                    slot.offer(ctx.buffer(), origin, placed, ctx.readsOutside);
+                }
+                ctx.flush();
+                stats.record(timer.stop(), placed, 0);
+                return placed;
+            } catch (Throwable t) {
+                stats.recordError(timer.stop());
+                throw t;
+            } finally {
+                ctx.clear();
+            }
+        }
+
+        @HideFromJS
+        public boolean isBatched() {
+            return batchPlacement != null;
+        }
+
+        /**
+         * Called from {@link net.liopyu.worldjs.mixin.PlacedFeatureMixin PlacedFeatureMixin} in place of
+         * {@code PlacedFeature#placeWithContext} when this feature has a batch placement callback
+         */
+        @HideFromJS
+        public boolean placeBatched(PlacedFeature placedFeature, PlacementContext context, RandomSource random, BlockPos origin) {
+            assert batchPlacement != null;
+            BatchPlaceCtx ctx = BATCH_CONTEXTS.get();
+            if (ctx.level != null) {
+                ctx = new BatchPlaceCtx();
+            }
+            final WorldGenLevel level = context.getLevel();
+            ctx.set(level, context.generator(), random, (KubeFeatureConfig) placedFeature.feature().value().config());
+            try {
+                final BatchPlaceCtx batch = ctx;
+                PlacementWalker.walk(placedFeature.placement(), context, random, origin, pos -> {
+                    if (level.ensureCanWrite(pos)) {
+                        batch.addOrigin(pos.getX(), pos.getY(), pos.getZ());
+                    }
+                    return false;
+                });
+                if (ctx.count == 0) {
+                    return false;
+                }
+                // Scripted modifiers in the walk record their own latency, so only the callback and the flush are timed here
+                final PlacementStats.Timer timer = PlacementStats.startTimer();
+                try {
+                    final boolean placed = batchPlacement.place(ctx);
+                    ctx.flush();
+                    stats.record(timer.stop(), placed, 0);
+                    return placed;
+                } catch (Throwable t) {
+                    stats.recordError(timer.stop());
+                    throw t;
+                }
+            } finally {
+                ctx.clear();
+            }
         }
     }
 
-    public record KubeFeatureConfig(Map<String, Object> values) implements FeatureConfiguration {}
+    public record KubeFeatureConfig(ConfigValues values) implements FeatureConfiguration {}
 
-    // TODO: Document
-    public record PlaceCtx(FeaturePlaceContext<KubeFeatureConfig> ctx) {
+    /**
+     * The placement callback of a {@link KubeFeature}
+     * <br><br>
+     * Script functions are wrapped in one through {@link ScriptExecution}, so worldgen threads each call them through their own context
+     */
+    @FunctionalInterface
+    public interface Placer extends Predicate<PlaceCtx> {
+        boolean test(PlaceCtx ctx);
+    }
 
-        public Optional<ConfiguredFeature<?, ?>> topFeature() {
-            return ctx.topFeature();
+    /**
+     * The batched placement callback of a {@link KubeFeature}, see {@link #placementBatch(BatchPlacer)}
+     */
+    @FunctionalInterface
+    public interface BatchPlacer {
+        boolean place(BatchPlaceCtx ctx);
+    }
+
+    /**
+     * The parts of a placement context shared between single and batched placement
+     * <br><br>
+     * Instances are reused between placements, so scripts should not keep a reference to one after their callback has returned
+     */
+    public static abstract class BasePlaceCtx implements ScriptExecution.Reused {
+
+        @Nullable
+        protected WorldGenLevel level;
+        @Nullable
+        protected ChunkGenerator generator;
+        @Nullable
+        protected RandomSource random;
+        @Nullable
+        protected KubeFeatureConfig config;
+        @Nullable
+        private BlockWriteBuffer buffer;
+        private final BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+        // Set once the placement reads anything besides its config and variant, which makes it unfit for stencils
+        boolean readsOutside;
+        private final ScriptExecution.WrapperCache wrapperCache = new ScriptExecution.WrapperCache();
+
+        protected void set(WorldGenLevel level, ChunkGenerator generator, RandomSource random, KubeFeatureConfig config) {
+            this.level = level;
+            this.generator = generator;
+            this.random = random;
+            this.config = config;
+        }
+
+        // Don't hold on to the level after placement, it would keep the chunk region alive
+        protected void clear() {
+            set(null, null, null, null);
+            readsOutside = false;
+            if (buffer != null) {
+                buffer.discard();
+            }
+        }
+
+        private void flush() {
+            if (buffer != null) {
+                buffer.flush(level);
+            }
+        }
+
+        /**
+         * The write buffer of this placement, its contents are applied to the level grouped by chunk section once the
+         * placement callback has returned
+         */
+        public BlockWriteBuffer buffer() {
+            if (buffer == null) {
+                buffer = new BlockWriteBuffer();
+            }
+            return buffer;
+        }
+
+        /**
+         * Buffers a block write, see {@link #buffer()}
+         */
+        public void setBlock(int x, int y, int z, BlockState state) {
+            buffer().set(x, y, z, state);
+        }
+
+        /**
+         * Buffers a block write, see {@link #buffer()}
+         */
+        public void setBlock(BlockPos pos, BlockState state) {
+            buffer().set(pos, state);
+        }
+
+        /**
+         * Fills the box between the two corners, inclusive
+         * @return The number of blocks written
+         */
+        public int fillBox(BlockPos from, BlockPos to, BlockStateProvider state) {
+            return replaceInBox(from, to, null, state);
+        }
+
+        /**
+         * Replaces the blocks in the box between the two corners, inclusive, which match the target
+         * @param target The predicate blocks must match to be replaced, tested against the level before any buffered writes, may be null
+         * @return The number of blocks written
+         */
+        public int replaceInBox(BlockPos from, BlockPos to, @Nullable BlockPredicate target, BlockStateProvider state) {
+            final int minX = Math.min(from.getX(), to.getX()), maxX = Math.max(from.getX(), to.getX());
+            final int minY = Math.min(from.getY(), to.getY()), maxY = Math.max(from.getY(), to.getY());
+            final int minZ = Math.min(from.getZ(), to.getZ()), maxZ = Math.max(from.getZ(), to.getZ());
+            int written = 0;
+            for (int x = minX ; x <= maxX ; x++) {
+                for (int z = minZ ; z <= maxZ ; z++) {
+                    for (int y = minY ; y <= maxY ; y++) {
+                        if (write(x, y, z, target, state)) written++;
+                    }
+                }
+            }
+            return written;
+        }
+
+        /**
+         * Fills a sphere of the given radius around the center
+         * @return The number of blocks written
+         */
+        public int fillSphere(BlockPos center, double radius, BlockStateProvider state) {
+            return replaceInEllipsoid(center, radius, radius, radius, null, state);
+        }
+
+        /**
+         * Replaces the blocks in a sphere of the given radius around the center which match the target
+         * @param target The predicate blocks must match to be replaced, tested against the level before any buffered writes, may be null
+         * @return The number of blocks written
+         */
+        public int replaceInSphere(BlockPos center, double radius, @Nullable BlockPredicate target, BlockStateProvider state) {
+            return replaceInEllipsoid(center, radius, radius, radius, target, state);
+        }
+
+        /**
+         * Fills an axis aligned ellipsoid with the given radii around the center
+         * @return The number of blocks written
+         */
+        public int fillEllipsoid(BlockPos center, double xRadius, double yRadius, double zRadius, BlockStateProvider state) {
+            return replaceInEllipsoid(center, xRadius, yRadius, zRadius, null, state);
+        }
+
+        /**
+         * Replaces the blocks in an axis aligned ellipsoid with the given radii around the center which match the target
+         * @param target The predicate blocks must match to be replaced, tested against the level before any buffered writes, may be null
+         * @return The number of blocks written
+         */
+        public int replaceInEllipsoid(BlockPos center, double xRadius, double yRadius, double zRadius, @Nullable BlockPredicate target, BlockStateProvider state) {
+            if (xRadius <= 0 || yRadius <= 0 || zRadius <= 0) {
+                return 0;
+            }
+            final int rx = Mth.floor(xRadius), ry = Mth.floor(yRadius), rz = Mth.floor(zRadius);
+            final double ix = 1 / (xRadius * xRadius), iy = 1 / (yRadius * yRadius), iz = 1 / (zRadius * zRadius);
+            int written = 0;
+            for (int dx = -rx ; dx <= rx ; dx++) {
+                final double fx = dx * dx * ix;
+                for (int dz = -rz ; dz <= rz ; dz++) {
+                    final double fxz = fx + dz * dz * iz;
+                    if (fxz > 1) continue;
+                    for (int dy = -ry ; dy <= ry ; dy++) {
+                        if (fxz + dy * dy * iy <= 1 && write(center.getX() + dx, center.getY() + dy, center.getZ() + dz, target, state)) {
+                            written++;
+                        }
+                    }
+                }
+            }
+            return written;
+        }
+
+        /**
+         * Fills a vertical column starting at the base
+         * @param height The height of the column, negative values extend it downwards
+         * @return The number of blocks written
+         */
+        public int fillColumn(BlockPos base, int height, BlockStateProvider state) {
+            final int step = height < 0 ? -1 : 1;
+            int written = 0;
+            for (int i = 0 ; i != height ; i += step) {
+                if (write(base.getX(), base.getY() + i, base.getZ(), null, state)) written++;
+            }
+            return written;
+        }
+
+        /**
+         * Fills a straight line between the two positions, inclusive
+         * @return The number of blocks written
+         */
+        public int fillLine(BlockPos from, BlockPos to, BlockStateProvider state) {
+            final int dx = to.getX() - from.getX(), dy = to.getY() - from.getY(), dz = to.getZ() - from.getZ();
+            final int steps = Math.max(Math.abs(dx), Math.max(Math.abs(dy), Math.abs(dz)));
+            if (steps == 0) {
+                return write(from.getX(), from.getY(), from.getZ(), null, state) ? 1 : 0;
+            }
+            int written = 0;
+            for (int i = 0 ; i <= steps ; i++) {
+                final double t = (double) i / steps;
+                if (write(from.getX() + Mth.floor(dx * t + 0.5), from.getY() + Mth.floor(dy * t + 0.5), from.getZ() + Mth.floor(dz * t + 0.5), null, state)) {
+                    written++;
+                }
+            }
+            return written;
+        }
+
+        private boolean write(int x, int y, int z, @Nullable BlockPredicate target, BlockStateProvider state) {
+            cursor.set(x, y, z);
+            if (target != null) {
+                readsOutside = true;
+                if (!target.test(level, cursor)) {
+                    return false;
+                }
+            }
+            // Anything but a single state may pick its block from the random source or the position
+            if (!(state instanceof SimpleStateProvider)) {
+                readsOutside = true;
+            }
+            buffer().set(x, y, z, state.getState(random, cursor));
+            return true;
         }
 
         public WorldGenLevel level() {
-            return ctx.level();
+            readsOutside = true;
+            return level;
         }
 
         public ChunkGenerator chunkGenerator() {
-            return ctx.chunkGenerator();
+            readsOutside = true;
+            return generator;
         }
 
         public RandomSource random() {
-            return ctx.random();
+            readsOutside = true;
+            return random;
+        }
+
+        public Object get(String name) {
+            return config.values().get(name);
+        }
+
+        /**
+         * @return The decoded config of the feature being placed, its typed getters accept slots from {@link CodecBuilder#slotOf(String)}
+         */
+        public ConfigValues config() {
+            return config.values();
+        }
+
+        public int getInt(String name) {
+            return config.values().getInt(name);
+        }
+
+        public int getInt(int slot) {
+            return config.values().getInt(slot);
+        }
+
+        public double getDouble(String name) {
+            return config.values().getDouble(name);
+        }
+
+        public double getDouble(int slot) {
+            return config.values().getDouble(slot);
+        }
+
+        public boolean getBoolean(String name) {
+            return config.values().getBoolean(name);
+        }
+
+        public boolean getBoolean(int slot) {
+            return config.values().getBoolean(slot);
+        }
+
+        @Override
+        @HideFromJS
+        public ScriptExecution.WrapperCache wrapperCache() {
+            return wrapperCache;
+        }
+    }
+
+    /**
+     * The context passed to a feature's placement callback
+     */
+    public static class PlaceCtx extends BasePlaceCtx {
+
+        private Optional<ConfiguredFeature<?, ?>> topFeature = Optional.empty();
+        @Nullable
+        private BlockPos origin;
+        private int variant = -1;
+
+        private PlaceCtx() {}
+
+        private void set(Optional<ConfiguredFeature<?, ?>> topFeature, WorldGenLevel level, ChunkGenerator generator, RandomSource random, BlockPos origin, KubeFeatureConfig config) {
+            set(level, generator, random, config);
+            this.topFeature = topFeature;
+            this.origin = origin;
+        }
+
+        @Override
+        protected void clear() {
+            super.clear();
+            topFeature = Optional.empty();
+            origin = null;
+            variant = -1;
+        }
+
+        /**
+         * Only allocated when requested, prefer the individual accessors
+         */
+        public FeaturePlaceContext<KubeFeatureConfig> ctx() {
+            readsOutside = true;
+            return new FeaturePlaceContext<>(topFeature, level, generator, random, origin, config);
+        }
+
+        public Optional<ConfiguredFeature<?, ?>> topFeature() {
+            return topFeature;
         }
 
         public BlockPos origin() {
-            return ctx.origin();
+            return origin;
         }
 
-        public Object get(String name) {
-            return ctx.config().values().get(name);
+        /**
+         * @return The stencil variant of this placement, or -1 if the feature does not use {@link FeatureBuilder#stencil(int, int) stencils}
+         */
+        public int variant() {
+            return variant;
+        }
+    }
+
+    /**
+     * The context passed to a feature's batched placement callback
+     * <br><br>
+     * Origins are packed as consecutive {@code x, y, z} triples in {@link #origins()}, of which the first {@link #count()}
+     * are valid. They are not packed into longs as JS numbers cannot hold a {@link BlockPos#asLong() packed position} exactly
+     */
+    public static class BatchPlaceCtx extends BasePlaceCtx {
+
+        private int[] origins = new int[48];
+        private int count;
+
+        private BatchPlaceCtx() {}
+
+        private void addOrigin(int x, int y, int z) {
+            final int index = count * 3;
+            if (index + 3 > origins.length) {
+                origins = Arrays.copyOf(origins, origins.length * 2);
+            }
+            origins[index] = x;
+            origins[index + 1] = y;
+            origins[index + 2] = z;
+            count++;
+        }
+
+        @Override
+        protected void clear() {
+            super.clear();
+            count = 0;
+        }
+
+        /**
+         * @return The packed origins, the array may be longer than {@code count() * 3}
+         */
+        public int[] origins() {
+            return origins;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public int x(int index) {
+            return origins[index * 3];
+        }
+
+        public int y(int index) {
+            return origins[index * 3 + 1];
+        }
+
+        public int z(int index) {
+            return origins[index * 3 + 2];
+        }
+
+        /**
+         * Allocates a new position, prefer {@link #x(int)}, {@link #y(int)} and {@link #z(int)} in hot loops
+         */
+        public BlockPos origin(int index) {
+            return new BlockPos(x(index), y(index), z(index));
         }
     }
 }
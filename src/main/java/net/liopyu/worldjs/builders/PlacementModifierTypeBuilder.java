@@ -3,34 +3,103 @@ package net.liopyu.worldjs.builders;
 import com.mojang.serialization.Codec;
 import dev.latvian.mods.kubejs.registry.BuilderBase;
 import dev.latvian.mods.kubejs.registry.RegistryInfo;
+import dev.latvian.mods.kubejs.script.ScriptType;
+import dev.latvian.mods.kubejs.typings.Info;
+import dev.latvian.mods.kubejs.typings.Param;
+import dev.latvian.mods.rhino.Function;
 import dev.latvian.mods.rhino.util.HideFromJS;
+import net.liopyu.worldjs.WorldJS;
+import net.liopyu.worldjs.utils.PlacementStats;
+import net.liopyu.worldjs.utils.ScriptExecution;
+import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.util.RandomSource;
 import net.minecraft.world.level.levelgen.placement.PlacementContext;
 import net.minecraft.world.level.levelgen.placement.PlacementModifier;
 import net.minecraft.world.level.levelgen.placement.PlacementModifierType;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 //TODO: Document
 public class PlacementModifierTypeBuilder extends BuilderBase<PlacementModifierType<PlacementModifierTypeBuilder.KubeModifier>> {
 
     public transient final CodecBuilder codecBuilder;
     public transient PosSelector selector;
+    @Nullable
+    public transient LazyPosSelector lazySelector;
+    @Nullable
+    public transient PlacementSteps steps;
+    private transient final AtomicBoolean warnedCapped = new AtomicBoolean();
 
     public PlacementModifierTypeBuilder(ResourceLocation i) {
         super(i);
         codecBuilder = new CodecBuilder();
         selector = (ctx, r, o, c, a) -> a.accept(o);
+        lazySelector = null;
+        steps = null;
     }
 
+    /**
+     * Sets the selector which adds the positions of the modifier to the acceptor, see {@link ScriptExecution} for what it may do
+     */
+    public PlacementModifierTypeBuilder positionSelector(Function selector) {
+        // Registry builders are only made by startup scripts
+        final ScriptExecution.Callback callback = ScriptExecution.bind(ScriptType.STARTUP, selector);
+        return positionSelector((ctx, random, origin, config, acceptor) -> callback.call(ctx, random, origin, config, acceptor));
+    }
+
+    @HideFromJS
     public PlacementModifierTypeBuilder positionSelector(PosSelector selector) {
         this.selector = selector;
+        this.lazySelector = null;
+        this.steps = null;
+        return this;
+    }
+
+    /**
+     * Sets a selector which is asked for one position at a time, each being sent through the rest of the modifier chain
+     * before the next one is asked for, until it returns null
+     * <br><br>
+     * When placed through WorldJS' fast placement path (see {@link PlacementWalker}), {@link LazyCursor#accepted()}
+     * tells the script how many of its positions made it through every following modifier, allowing it to stop early.
+     * Otherwise, it will always be 0
+     * <br><br>
+     * A selector is asked for at most {@value LazyCursor#MAX_CANDIDATES} positions per origin, a warning is logged the
+     * first time a modifier reaches that
+     */
+    @Info(value = "Sets a selector which is called for one position at a time until it returns null. Each position goes through the rest of the modifier chain before the next call, and `cursor.accepted()` counts how many made it through. At most 4096 positions are asked for per origin, anything after that is dropped and a warning is logged once", params = {
+            @Param(name = "selector", value = "Called with the placement context, random, origin, config values and cursor, returns the next position or null when done")
+    })
+    public PlacementModifierTypeBuilder lazyPositionSelector(Function selector) {
+        final ScriptExecution.Callback callback = ScriptExecution.bind(ScriptType.STARTUP, selector);
+        return lazyPositionSelector((ctx, random, origin, config, cursor) -> callback.callAs(BlockPos.class, ctx, random, origin, config, cursor));
+    }
+
+    @HideFromJS
+    public PlacementModifierTypeBuilder lazyPositionSelector(LazyPosSelector selector) {
+        this.lazySelector = selector;
+        this.steps = null;
+        return this;
+    }
+
+    /**
+     * Replaces the selector with a list of {@link PlacementSteps steps}, which run entirely in Java without calling the script
+     * <br><br>
+     * Steps may read numeric fields of the configuration by name, the config fields must be added before the type is registered
+     */
+    public PlacementModifierTypeBuilder steps(Consumer<PlacementSteps> steps) {
+        this.steps = Util.make(new PlacementSteps(), steps);
+        this.lazySelector = null;
         return this;
     }
 
@@ -46,26 +115,113 @@ public class PlacementModifierTypeBuilder extends BuilderBase<PlacementModifierT
 
     @Override
     public PlacementModifierType<KubeModifier> createObject() {
-        return new KubeType(codecBuilder, selector);
+        return new KubeType(id, codecBuilder, selector, lazySelector, steps == null ? null : steps.compile(codecBuilder));
     }
     
     public static class KubeModifier extends PlacementModifier {
 
-        public final Map<String, Object> values;
+        public final ConfigValues values;
         private final KubeType type;
-        private final PosSelector selector;
 
-        public KubeModifier(Map<String, Object> values, KubeType type, PosSelector selector) {
+        public KubeModifier(ConfigValues values, KubeType type) {
             this.values = values;
             this.type = type;
-            this.selector = selector;
         }
 
         @Override
         public Stream<BlockPos> getPositions(PlacementContext pContext, RandomSource pRandom, BlockPos pPos) {
-            final PosAcceptor acceptor = new PosAcceptor();
-            selector.select(pContext, pRandom, pPos, values, acceptor);
-            return acceptor.stream();
+            if (type.steps != null) {
+                final BlockPos pos = applySteps(pContext, pRandom, pPos);
+                return pos == null ? Stream.empty() : Stream.of(pos);
+            }
+            if (type.lazySelector != null) {
+                return StreamSupport.stream(new LazySpliterator(this, pContext, pRandom, pPos), false);
+            }
+            final PosAcceptor acceptor = PosAcceptor.acquire();
+            try {
+                select(pContext, pRandom, pPos, acceptor);
+                return acceptor.stream();
+            } finally {
+                acceptor.release();
+            }
+        }
+
+        /**
+         * Runs the script or steps, adding the selected positions to the given acceptor
+         */
+        @HideFromJS
+        public void select(PlacementContext context, RandomSource random, BlockPos origin, PosAcceptor acceptor) {
+            if (type.steps != null) {
+                final BlockPos pos = applySteps(context, random, origin);
+                if (pos != null) {
+                    acceptor.accept(pos);
+                }
+                return;
+            }
+            final int before = acceptor.size();
+            final PlacementStats.Timer timer = PlacementStats.startTimer();
+            try {
+                type.selector.select(context, random, origin, values, acceptor);
+            } catch (Throwable t) {
+                type.stats.recordError(timer.stop());
+                throw t;
+            }
+            final int emitted = acceptor.size() - before;
+            type.stats.record(timer.stop(), emitted > 0, emitted);
+        }
+
+        @Nullable
+        private BlockPos applySteps(PlacementContext context, RandomSource random, BlockPos origin) {
+            assert type.steps != null;
+            final PlacementStats.Timer timer = PlacementStats.startTimer();
+            final BlockPos.MutableBlockPos pos = origin.mutable();
+            boolean kept = true;
+            try {
+                for (PlacementSteps.Step step : type.steps) {
+                    if (!step.apply(context, random, pos, values)) {
+                        kept = false;
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                type.stats.recordError(timer.stop());
+                throw t;
+            }
+            type.stats.record(timer.stop(), kept, kept ? 1 : 0);
+            return kept ? pos.immutable() : null;
+        }
+
+        @HideFromJS
+        public boolean isLazy() {
+            return type.steps == null && type.lazySelector != null;
+        }
+
+        /**
+         * Asks the lazy selector for its next position, each call is recorded as its own invocation in the stats
+         *
+         * @return The next position, or null once the selector is exhausted
+         */
+        @HideFromJS
+        @Nullable
+        public BlockPos next(PlacementContext context, RandomSource random, BlockPos origin, LazyCursor cursor) {
+            assert type.lazySelector != null;
+            if (cursor.index >= LazyCursor.MAX_CANDIDATES) {
+                if (!type.warnedCapped.getAndSet(true)) {
+                    WorldJS.LOGGER.warn("Lazy position selector of placement modifier {} reached the cap of {} positions for one origin, the rest were dropped", type.id, LazyCursor.MAX_CANDIDATES);
+                }
+                return null;
+            }
+            final BlockPos pos;
+            final PlacementStats.Timer timer = PlacementStats.startTimer();
+            try {
+                pos = type.lazySelector.next(context, random, origin, values, cursor);
+            } catch (Throwable t) {
+                type.stats.recordError(timer.stop());
+                throw t;
+            }
+            cursor.index++;
+            type.stats.record(timer.stop(), pos != null, pos != null ? 1 : 0);
+            return pos;
         }
 
         @Override
@@ -78,9 +234,19 @@ public class PlacementModifierTypeBuilder extends BuilderBase<PlacementModifierT
     public static class KubeType implements PlacementModifierType<KubeModifier> {
 
         private final Codec<KubeModifier> codec;
+        private final PlacementStats stats;
+        private final PosSelector selector;
+        @Nullable
+        private final LazyPosSelector lazySelector;
+        @Nullable
+        private final PlacementSteps.Step[] steps;
 
-        public KubeType(CodecBuilder codecBuilder, PosSelector selector) {
-            this.codec = codecBuilder.build(map -> new KubeModifier(map, this, selector), m -> m.values);
+        public KubeType(ResourceLocation id, CodecBuilder codecBuilder, PosSelector selector, @Nullable LazyPosSelector lazySelector, @Nullable PlacementSteps.Step[] steps) {
+            this.codec = codecBuilder.build(map -> new KubeModifier(map, this), m -> m.values);
+            this.stats = PlacementStats.modifier(id);
+            this.selector = selector;
+            this.lazySelector = lazySelector;
+            this.steps = steps;
         }
 
         @Override
@@ -96,33 +262,224 @@ public class PlacementModifierTypeBuilder extends BuilderBase<PlacementModifierT
                 PlacementContext ctx,
                 RandomSource random,
                 BlockPos origin,
-                Map<String, Object> config,
+                ConfigValues config,
                 PosAcceptor positionAcceptor
         );
     }
 
+    @FunctionalInterface
+    public interface LazyPosSelector {
+
+        /**
+         * @return The next position, or null if there are no more
+         */
+        @Nullable
+        BlockPos next(
+                PlacementContext ctx,
+                RandomSource random,
+                BlockPos origin,
+                ConfigValues config,
+                LazyCursor cursor
+        );
+    }
+
+    /**
+     * The state of one run of a {@link LazyPosSelector}, from the origin it was given until it returns null
+     */
+    public static class LazyCursor implements ScriptExecution.Reused {
+
+        // Guards against selectors which never return null
+        static final int MAX_CANDIDATES = 4096;
+
+        private int index = 0;
+        private int accepted = 0;
+        @Nullable
+        private Object data = null;
+        private final ScriptExecution.WrapperCache wrapperCache = new ScriptExecution.WrapperCache();
+
+        /**
+         * @return How many positions have been asked for so far
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * @return How many of the returned positions made it through the rest of the modifier chain.
+         * Only tracked by WorldJS' fast placement path, otherwise always 0
+         */
+        public int accepted() {
+            return accepted;
+        }
+
+        /**
+         * Arbitrary state kept by the script between calls, such as a precomputed list of candidates
+         */
+        @Nullable
+        public Object getData() {
+            return data;
+        }
+
+        public void setData(@Nullable Object data) {
+            this.data = data;
+        }
+
+        @Override
+        @HideFromJS
+        public ScriptExecution.WrapperCache wrapperCache() {
+            return wrapperCache;
+        }
+
+        void accept() {
+            accepted++;
+        }
+
+        void reset() {
+            index = 0;
+            accepted = 0;
+            data = null;
+        }
+    }
+
+    private static class LazySpliterator extends Spliterators.AbstractSpliterator<BlockPos> {
+
+        private final KubeModifier modifier;
+        private final PlacementContext context;
+        private final RandomSource random;
+        private final BlockPos origin;
+        private final LazyCursor cursor = new LazyCursor();
+        private boolean done = false;
+
+        private LazySpliterator(KubeModifier modifier, PlacementContext context, RandomSource random, BlockPos origin) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.modifier = modifier;
+            this.context = context;
+            this.random = random;
+            this.origin = origin;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super BlockPos> action) {
+            if (done) {
+                return false;
+            }
+            final BlockPos pos = modifier.next(context, random, origin, cursor);
+            if (pos == null) {
+                done = true;
+                return false;
+            }
+            action.accept(pos);
+            return true;
+        }
+    }
+
+    /**
+     * Collects the positions emitted by a {@link PosSelector} as {@link BlockPos#asLong() packed longs}, only turning them
+     * back into {@link BlockPos BlockPos's} once they are {@link #stream() streamed} to the next modifier
+     * <br><br>
+     * One acceptor is reused per worldgen thread, so scripts must not hold onto it after {@link PosSelector#select} returns
+     */
     // This exists to avoid having to deal with Rhino's generics jank
-    public static class PosAcceptor {
+    public static class PosAcceptor implements ScriptExecution.Reused {
+
+        private static final int INITIAL_CAPACITY = 16;
+        // Buffers which grew past this are dropped on release rather than being retained by the thread forever
+        private static final int MAX_RETAINED_CAPACITY = 4096;
+        private static final ThreadLocal<PosAcceptor> ACCEPTORS = ThreadLocal.withInitial(PosAcceptor::new);
+
+        private long[] positions = new long[INITIAL_CAPACITY];
+        private final ScriptExecution.WrapperCache wrapperCache = new ScriptExecution.WrapperCache();
+        private int size = 0;
+        private boolean inUse = false;
+
+        /**
+         * @return The current thread's acceptor, or a new one if it is already in use further up the stack
+         */
+        static PosAcceptor acquire() {
+            PosAcceptor acceptor = ACCEPTORS.get();
+            if (acceptor.inUse) {
+                acceptor = new PosAcceptor();
+            }
+            acceptor.inUse = true;
+            return acceptor;
+        }
+
+        void release() {
+            clear();
+            inUse = false;
+        }
 
-        private final List<BlockPos> positions = new ArrayList<>();
+        public PosAcceptor accept(int x, int y, int z) {
+            return accept(BlockPos.asLong(x, y, z));
+        }
 
         public PosAcceptor accept(BlockPos pos) {
-            positions.add(pos);
-            return this;
+            return accept(pos.asLong());
         }
 
         public PosAcceptor acceptAll(BlockPos... positions) {
-            return acceptAll(List.of(positions));
+            ensureCapacity(size + positions.length);
+            for (BlockPos pos : positions) {
+                this.positions[size++] = pos.asLong();
+            }
+            return this;
         }
 
         public PosAcceptor acceptAll(List<BlockPos> positions) {
-            this.positions.addAll(positions);
+            ensureCapacity(size + positions.size());
+            for (BlockPos pos : positions) {
+                this.positions[size++] = pos.asLong();
+            }
+            return this;
+        }
+
+        private PosAcceptor accept(long packed) {
+            ensureCapacity(size + 1);
+            positions[size++] = packed;
+            return this;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(capacity, positions.length << 1));
+            }
+        }
+
+        @HideFromJS
+        public int size() {
+            return size;
+        }
+
+        long positionAt(int index) {
+            return positions[index];
+        }
+
+        @HideFromJS
+        public PosAcceptor clear() {
+            size = 0;
+            if (positions.length > MAX_RETAINED_CAPACITY) {
+                positions = new long[INITIAL_CAPACITY];
+            }
             return this;
         }
 
+        @Override
+        @HideFromJS
+        public ScriptExecution.WrapperCache wrapperCache() {
+            return wrapperCache;
+        }
+
+        /**
+         * The positions are copied out, as the stream is consumed after the acceptor is released, during which time it
+         * may already be collecting positions for a following modifier in the chain
+         */
         @HideFromJS
         public Stream<BlockPos> stream() {
-            return positions.stream();
+            return switch (size) {
+                case 0 -> Stream.empty();
+                case 1 -> Stream.of(BlockPos.of(positions[0]));
+                default -> LongStream.of(Arrays.copyOf(positions, size)).mapToObj(BlockPos::of);
+            };
         }
     }
 }
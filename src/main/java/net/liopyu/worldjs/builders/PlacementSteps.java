@@ -0,0 +1,175 @@
+package net.liopyu.worldjs.builders;
+
+import dev.latvian.mods.kubejs.typings.Info;
+import dev.latvian.mods.kubejs.typings.Param;
+import dev.latvian.mods.rhino.util.HideFromJS;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.Mth;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.levelgen.blockpredicates.BlockPredicate;
+import net.minecraft.world.level.levelgen.placement.PlacementContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A list of simple position transforms and checks, run in Java in place of a script for a scripted placement modifier
+ * <br><br>
+ * Every step takes the current position and either moves it or discards it, so the modifier emits at most one position
+ * per origin. Numeric arguments may either be a number, or the name of a numeric field of the modifier's configuration
+ */
+public class PlacementSteps {
+
+    private final List<Function<CodecBuilder, Step>> steps = new ArrayList<>();
+
+    @Info(value = "Moves the position by the given amounts", params = {
+            @Param(name = "x", value = "The x offset, or the name of a config field"),
+            @Param(name = "y", value = "The y offset, or the name of a config field"),
+            @Param(name = "z", value = "The z offset, or the name of a config field")
+    })
+    public PlacementSteps offset(Object x, Object y, Object z) {
+        steps.add(codec -> {
+            final Value dx = Value.of(codec, x);
+            final Value dy = Value.of(codec, y);
+            final Value dz = Value.of(codec, z);
+            return (ctx, random, pos, config) -> {
+                pos.move(dx.getInt(config), dy.getInt(config), dz.getInt(config));
+                return true;
+            };
+        });
+        return this;
+    }
+
+    @Info(value = "Randomly moves the position by up to the given distances in either direction, in the same way as `minecraft:random_offset`", params = {
+            @Param(name = "xz", value = "The maximum horizontal distance, or the name of a config field"),
+            @Param(name = "y", value = "The maximum vertical distance, or the name of a config field")
+    })
+    public PlacementSteps jitter(Object xz, Object y) {
+        steps.add(codec -> {
+            final Value spreadXZ = Value.of(codec, xz);
+            final Value spreadY = Value.of(codec, y);
+            return (ctx, random, pos, config) -> {
+                final int h = spreadXZ.getInt(config);
+                final int v = spreadY.getInt(config);
+                // Same sampling order as RandomOffsetPlacement
+                final int x = random.nextIntBetweenInclusive(-h, h);
+                final int y = random.nextIntBetweenInclusive(-v, v);
+                final int z = random.nextIntBetweenInclusive(-h, h);
+                pos.move(x, y, z);
+                return true;
+            };
+        });
+        return this;
+    }
+
+    @Info(value = "Clamps the position's y level to the given range", params = {
+            @Param(name = "min", value = "The minimum y, or the name of a config field"),
+            @Param(name = "max", value = "The maximum y, or the name of a config field")
+    })
+    public PlacementSteps clampY(Object min, Object max) {
+        steps.add(codec -> {
+            final Value minY = Value.of(codec, min);
+            final Value maxY = Value.of(codec, max);
+            return (ctx, random, pos, config) -> {
+                pos.setY(Mth.clamp(pos.getY(), minY.getInt(config), maxY.getInt(config)));
+                return true;
+            };
+        });
+        return this;
+    }
+
+    @Info(value = "Moves the position to the height of the given heightmap at its x and z", params = {
+            @Param(name = "heightmap", value = "The heightmap to use")
+    })
+    public PlacementSteps heightmap(Heightmap.Types heightmap) {
+        steps.add(codec -> (ctx, random, pos, config) -> {
+            pos.setY(ctx.getHeight(heightmap, pos.getX(), pos.getZ()));
+            return true;
+        });
+        return this;
+    }
+
+    @Info(value = "Discards the position unless the block predicate matches at it", params = {
+            @Param(name = "predicate", value = "The block predicate")
+    })
+    public PlacementSteps requireBlock(BlockPredicate predicate) {
+        steps.add(codec -> (ctx, random, pos, config) -> predicate.test(ctx.getLevel(), pos));
+        return this;
+    }
+
+    @Info(value = "Discards the position unless the biome info noise at it is above the threshold, like `minecraft:noise_threshold_count` does", params = {
+            @Param(name = "scale", value = "The horizontal scale of the noise, or the name of a config field"),
+            @Param(name = "threshold", value = "The value the noise has to be above, in [-1, 1], or the name of a config field")
+    })
+    public PlacementSteps noiseGate(Object scale, Object threshold) {
+        steps.add(codec -> {
+            final Value noiseScale = Value.of(codec, scale);
+            final Value noiseThreshold = Value.of(codec, threshold);
+            return (ctx, random, pos, config) -> {
+                final double factor = noiseScale.getDouble(config);
+                return Biome.BIOME_INFO_NOISE.getValue(pos.getX() / factor, pos.getZ() / factor, false) > noiseThreshold.getDouble(config);
+            };
+        });
+        return this;
+    }
+
+    @Info(value = "Discards the position unless a random number is below the given chance", params = {
+            @Param(name = "chance", value = "The chance to keep the position, in [0, 1], or the name of a config field")
+    })
+    public PlacementSteps chance(Object chance) {
+        steps.add(codec -> {
+            final Value keepChance = Value.of(codec, chance);
+            return (ctx, random, pos, config) -> random.nextFloat() < keepChance.getDouble(config);
+        });
+        return this;
+    }
+
+    /**
+     * Resolves the config field names used by the steps, should be called once the configuration is complete
+     */
+    @HideFromJS
+    public Step[] compile(CodecBuilder codec) {
+        final Step[] compiled = new Step[steps.size()];
+        for (int i = 0 ; i < compiled.length ; i++) {
+            compiled[i] = steps.get(i).apply(codec);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return If the position should be kept
+     */
+    @FunctionalInterface
+    public interface Step {
+        boolean apply(PlacementContext ctx, RandomSource random, BlockPos.MutableBlockPos pos, ConfigValues config);
+    }
+
+    /**
+     * Either a constant or a config slot
+     */
+    private record Value(double constant, int slot) {
+
+        static Value of(CodecBuilder codec, Object o) {
+            if (o instanceof Number number) {
+                return new Value(number.doubleValue(), -1);
+            }
+            final String name = String.valueOf(o);
+            final int slot = codec.slotOf(name);
+            if (slot == -1) {
+                throw new IllegalArgumentException("Placement step references unknown config field '" + name + "'");
+            }
+            return new Value(0, slot);
+        }
+
+        double getDouble(ConfigValues config) {
+            return slot == -1 ? constant : config.getDouble(slot);
+        }
+
+        int getInt(ConfigValues config) {
+            return slot == -1 ? (int) constant : config.getInt(slot);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package net.liopyu.worldjs.builders;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.levelgen.placement.PlacedFeature;
+import net.minecraft.world.level.levelgen.placement.PlacementContext;
+import net.minecraft.world.level.levelgen.placement.PlacementModifier;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a placed feature's modifier chain depth first, the same way the nested {@link java.util.stream.Stream#flatMap flatMap}s
+ * of {@code PlacedFeature#placeWithContext} do, without building the nested stream pipeline
+ * <br><br>
+ * {@link PlacementModifierTypeBuilder.KubeModifier KubeModifiers} fill a {@link PlacementModifierTypeBuilder.PosAcceptor PosAcceptor}
+ * kept per chain depth and are iterated straight out of its buffer, other modifiers are iterated with {@link java.util.stream.Stream#forEach forEach},
+ * just like {@code flatMap} does, so the positions produced and the order randomness is consumed in stay the same.
+ * Lazy selectors are pulled one position at a time, and told how many of their positions reached the end of the chain
+ * <br><br>
+ * Can be disabled with {@code -Dworldjs.disableFastPlacement=true}, in which case only batched features go through here
+ */
+@ApiStatus.Internal
+public final class PlacementWalker {
+
+    public static final boolean ENABLED = !Boolean.getBoolean("worldjs.disableFastPlacement");
+
+    private static final ThreadLocal<PlacementWalker> WALKERS = ThreadLocal.withInitial(PlacementWalker::new);
+
+    private PlacementModifierTypeBuilder.PosAcceptor[] acceptors = new PlacementModifierTypeBuilder.PosAcceptor[4];
+    private PlacementModifierTypeBuilder.LazyCursor[] cursors = new PlacementModifierTypeBuilder.LazyCursor[4];
+    private boolean inUse = false;
+    private boolean placed = false;
+    // How many positions made it through the whole chain, used to feed back into lazy selectors
+    private int reached = 0;
+
+    private PlacementWalker() {}
+
+    /**
+     * Receives every position which makes it through the whole modifier chain
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @return If a feature was placed at the position
+         */
+        boolean accept(BlockPos pos);
+    }
+
+    /**
+     * @return If the fast path should be used for the given placed feature, i.e. it has at least one scripted modifier
+     */
+    public static boolean shouldWalk(PlacedFeature placedFeature) {
+        if (!ENABLED) {
+            return false;
+        }
+        for (PlacementModifier modifier : placedFeature.placement()) {
+            if (modifier instanceof PlacementModifierTypeBuilder.KubeModifier) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return If the sink returned true for any position
+     */
+    public static boolean walk(List<PlacementModifier> modifiers, PlacementContext context, RandomSource random, BlockPos origin, Sink sink) {
+        PlacementWalker walker = WALKERS.get();
+        if (walker.inUse) {
+            walker = new PlacementWalker(); // A feature placing another placed feature
+        }
+        walker.inUse = true;
+        walker.placed = false;
+        walker.reached = 0;
+        try {
+            walker.walk(modifiers, 0, context, random, origin, sink);
+            return walker.placed;
+        } finally {
+            walker.inUse = false;
+        }
+    }
+
+    private void walk(List<PlacementModifier> modifiers, int depth, PlacementContext context, RandomSource random, BlockPos pos, Sink sink) {
+        if (depth == modifiers.size()) {
+            reached++;
+            if (sink.accept(pos)) {
+                placed = true;
+            }
+            return;
+        }
+        final PlacementModifier modifier = modifiers.get(depth);
+        if (modifier instanceof PlacementModifierTypeBuilder.KubeModifier kubeModifier && kubeModifier.isLazy()) {
+            final PlacementModifierTypeBuilder.LazyCursor cursor = cursor(depth);
+            try {
+                BlockPos next;
+                while ((next = kubeModifier.next(context, random, pos, cursor)) != null) {
+                    final int before = reached;
+                    walk(modifiers, depth + 1, context, random, next, sink);
+                    if (reached > before) {
+                        cursor.accept();
+                    }
+                }
+            } finally {
+                cursor.reset();
+            }
+        } else if (modifier instanceof PlacementModifierTypeBuilder.KubeModifier kubeModifier) {
+            final PlacementModifierTypeBuilder.PosAcceptor acceptor = acceptor(depth);
+            try {
+                kubeModifier.select(context, random, pos, acceptor);
+                for (int i = 0 ; i < acceptor.size() ; i++) {
+                    walk(modifiers, depth + 1, context, random, BlockPos.of(acceptor.positionAt(i)), sink);
+                }
+            } finally {
+                acceptor.clear();
+            }
+        } else {
+            modifier.getPositions(context, random, pos).forEach(p -> walk(modifiers, depth + 1, context, random, p, sink));
+        }
+    }
+
+    private PlacementModifierTypeBuilder.PosAcceptor acceptor(int depth) {
+        if (depth >= acceptors.length) {
+            acceptors = Arrays.copyOf(acceptors, Math.max(depth + 1, acceptors.length * 2));
+        }
+        PlacementModifierTypeBuilder.PosAcceptor acceptor = acceptors[depth];
+        if (acceptor == null) {
+            acceptor = acceptors[depth] = new PlacementModifierTypeBuilder.PosAcceptor();
+        }
+        return acceptor;
+    }
+
+    private PlacementModifierTypeBuilder.LazyCursor cursor(int depth) {
+        if (depth >= cursors.length) {
+            cursors = Arrays.copyOf(cursors, Math.max(depth + 1, cursors.length * 2));
+        }
+        PlacementModifierTypeBuilder.LazyCursor cursor = cursors[depth];
+        if (cursor == null) {
+            cursor = cursors[depth] = new PlacementModifierTypeBuilder.LazyCursor();
+        }
+        return cursor;
+    }
+}
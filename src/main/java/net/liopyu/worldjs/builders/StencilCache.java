@@ -0,0 +1,155 @@
+package net.liopyu.worldjs.builders;
+
+import com.google.common.collect.MapMaker;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the block writes of deterministic scripted features so later placements can replay them without calling the script
+ * <br><br>
+ * Stencils are kept per configured feature, by config identity, and per variant. A variant becomes a stencil once
+ * its first {@code samples} placements all wrote exactly the same blocks relative to their origin. If any two samples
+ * differ, a sample wrote nothing through the placement context, or a sample read the level, generator or random source,
+ * the variant falls back to always calling the script
+ */
+public class StencilCache {
+
+    private final int variants;
+    private final int samples;
+    // Weak keys compare by identity, so configs are never hashed by value here
+    private final ConcurrentMap<FeatureBuilder.KubeFeatureConfig, Slot[]> slots = new MapMaker().weakKeys().makeMap();
+
+    public StencilCache(int variants, int samples) {
+        this.variants = Math.max(variants, 1);
+        this.samples = Math.max(samples, 1);
+    }
+
+    public int variants() {
+        return variants;
+    }
+
+    public Slot slot(FeatureBuilder.KubeFeatureConfig config, int variant) {
+        Slot[] array = slots.get(config);
+        if (array == null) {
+            array = slots.computeIfAbsent(config, c -> {
+                final Slot[] created = new Slot[variants];
+                for (int i = 0 ; i < variants ; i++) {
+                    created[i] = new Slot();
+                }
+                return created;
+            });
+        }
+        return array[variant];
+    }
+
+    public final class Slot {
+
+        @Nullable
+        private volatile Stencil stencil;
+        private volatile boolean disabled;
+        @Nullable
+        private Stencil candidate;
+        private int recorded;
+
+        /**
+         * @return The finished stencil of this variant, or null if it is still being recorded or is not deterministic
+         */
+        @Nullable
+        public Stencil stencil() {
+            return stencil;
+        }
+
+        public boolean isRecording() {
+            return stencil == null && !disabled;
+        }
+
+        /**
+         * Offers the writes buffered by a script placement as a sample of this variant
+         * @param readsOutside If the placement read anything besides its config and variant, which disables the variant
+         */
+        public synchronized void offer(BlockWriteBuffer buffer, BlockPos origin, boolean placed, boolean readsOutside) {
+            if (!isRecording()) {
+                return;
+            }
+            if (readsOutside) {
+                disable();
+                return;
+            }
+            if (buffer.size() == 0) {
+                // Most likely written straight to the level, which can't be recorded
+                disable();
+                return;
+            }
+            final Stencil sample = Stencil.record(buffer, origin, placed);
+            if (candidate == null) {
+                candidate = sample;
+            } else if (!candidate.matches(sample)) {
+                disable();
+                return;
+            }
+            if (++recorded >= samples) {
+                stencil = candidate;
+                candidate = null;
+            }
+        }
+
+        private void disable() {
+            disabled = true;
+            candidate = null;
+        }
+    }
+
+    public static final class Stencil {
+
+        private final long[] offsets;
+        private final BlockState[] states;
+        private final boolean placed;
+        private final boolean skipUpdates;
+
+        private Stencil(long[] offsets, BlockState[] states, boolean placed, boolean skipUpdates) {
+            this.offsets = offsets;
+            this.states = states;
+            this.placed = placed;
+            this.skipUpdates = skipUpdates;
+        }
+
+        static Stencil record(BlockWriteBuffer buffer, BlockPos origin, boolean placed) {
+            final int size = buffer.size();
+            final long[] offsets = new long[size];
+            final BlockState[] states = new BlockState[size];
+            for (int i = 0 ; i < size ; i++) {
+                final long pos = buffer.positionAt(i);
+                offsets[i] = BlockPos.asLong(BlockPos.getX(pos) - origin.getX(), BlockPos.getY(pos) - origin.getY(), BlockPos.getZ(pos) - origin.getZ());
+                states[i] = buffer.stateAt(i);
+            }
+            return new Stencil(offsets, states, placed, buffer.skipsUpdates());
+        }
+
+        boolean matches(Stencil other) {
+            // Block states are interned, so identity comparison is enough
+            return placed == other.placed && skipUpdates == other.skipUpdates && Arrays.equals(offsets, other.offsets) && Arrays.equals(states, other.states);
+        }
+
+        /**
+         * @return If the recorded placement reported that it placed
+         */
+        public boolean placed() {
+            return placed;
+        }
+
+        /**
+         * Buffers the recorded writes relative to the given origin
+         */
+        public void replay(BlockWriteBuffer buffer, BlockPos origin) {
+            buffer.skipUpdates(skipUpdates);
+            for (int i = 0 ; i < offsets.length ; i++) {
+                final long offset = offsets[i];
+                buffer.set(origin.getX() + BlockPos.getX(offset), origin.getY() + BlockPos.getY(offset), origin.getZ() + BlockPos.getZ(offset), states[i]);
+            }
+        }
+    }
+}
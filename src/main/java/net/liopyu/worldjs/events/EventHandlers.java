@@ -3,8 +3,14 @@ package net.liopyu.worldjs.events;
 import dev.latvian.mods.kubejs.event.EventGroup;
 import dev.latvian.mods.kubejs.event.EventHandler;
 import dev.latvian.mods.kubejs.event.EventJS;
+import dev.latvian.mods.kubejs.script.ScriptType;
 import dev.latvian.mods.kubejs.script.data.DataPackEventJS;
 import net.liopyu.worldjs.WorldJS;
+import net.liopyu.worldjs.utils.DataUtils;
+import net.liopyu.worldjs.utils.WorldgenDataCache;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.Map;
 
 public class EventHandlers {
 
@@ -14,10 +20,34 @@ public class EventHandlers {
 
     public static Object handleJsonDataEvent(EventJS event) {
         if (event instanceof DataPackEventJS data) {
-            jsonData.post(new JsonDataEventJS(data));
+            final String key = WorldgenDataCache.ENABLED && jsonData.hasListeners() ? WorldgenDataCache.computeKey() : null;
+            if (key == null) {
+                post(new JsonDataEventJS(data));
+                return null;
+            }
+            final Map<ResourceLocation, String> cached = WorldgenDataCache.load(key);
+            if (cached != null) {
+                cached.forEach(data::add);
+                // The event is not posted at all, so handlers' other side effects don't happen either
+                WorldJS.LOGGER.info("Loaded {} worldgen data entries from the WorldJS cache, skipping WorldJSEvents.worldgenData handlers", cached.size());
+                return null;
+            }
+            final WorldgenDataCache.Recorder recorder = new WorldgenDataCache.Recorder();
+            // Handlers that throw are logged by KubeJS and the event carries on, so errors are counted instead
+            final int errors = ScriptType.SERVER.console.errors.size();
+            post(new JsonDataEventJS(data, recorder));
+            if (ScriptType.SERVER.console.errors.size() == errors) {
+                WorldgenDataCache.save(key, recorder);
+            } else {
+                WorldJS.LOGGER.warn("Not caching WorldJS worldgen data, as scripts reported errors while generating it");
+            }
         } else {
             WorldJS.LOGGER.error("WorldJS JSON worldgen event failed to fire due to provided parent event not being the correct class!");
         }
         return null;
     }
+
+    private static void post(JsonDataEventJS event) {
+        DataUtils.runWithJsonDataEvent(event, () -> jsonData.post(event));
+    }
 }
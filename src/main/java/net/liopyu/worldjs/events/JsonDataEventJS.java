@@ -4,19 +4,30 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import dev.latvian.mods.kubejs.KubeJSPaths;
 import dev.latvian.mods.kubejs.event.EventJS;
 import dev.latvian.mods.kubejs.event.EventResult;
 import dev.latvian.mods.kubejs.registry.RegistryInfo;
+import dev.latvian.mods.kubejs.script.ScriptType;
 import dev.latvian.mods.kubejs.script.data.DataPackEventJS;
 import dev.latvian.mods.kubejs.typings.Generics;
 import dev.latvian.mods.kubejs.typings.Info;
 import dev.latvian.mods.kubejs.typings.Param;
+import dev.latvian.mods.kubejs.util.ListJS;
 import dev.latvian.mods.rhino.util.HideFromJS;
+import net.liopyu.worldjs.WorldJS;
 import net.liopyu.worldjs.api.ICFeatureMethodHolder;
 import net.liopyu.worldjs.utils.Builders;
+import net.liopyu.worldjs.utils.DataProfiler;
 import net.liopyu.worldjs.utils.DataUtils;
+import net.liopyu.worldjs.utils.EncodeCache;
+import net.liopyu.worldjs.utils.CompactJson;
+import net.liopyu.worldjs.utils.OreTable;
 import net.liopyu.worldjs.utils.PlacedFeatureBuilder;
 import net.liopyu.worldjs.utils.Placement;
+import net.liopyu.worldjs.utils.WorldgenDataCache;
 import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
@@ -28,6 +39,7 @@ import net.minecraft.util.valueproviders.IntProvider;
 import net.minecraft.util.valueproviders.UniformInt;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.levelgen.GenerationStep;
 import net.minecraft.world.level.levelgen.GeodeBlockSettings;
 import net.minecraft.world.level.levelgen.blockpredicates.BlockPredicate;
 import net.minecraft.world.level.levelgen.feature.configurations.BlockColumnConfiguration;
@@ -36,9 +48,22 @@ import net.minecraft.world.level.levelgen.feature.stateproviders.BlockStateProvi
 import net.minecraft.world.level.levelgen.feature.stateproviders.RuleBasedBlockStateProvider;
 import net.minecraft.world.level.levelgen.placement.CaveSurface;
 import net.minecraft.world.level.material.FluidState;
+import net.minecraftforge.fml.loading.FMLPaths;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * Methods for creating configured features found in {@link net.minecraft.world.level.levelgen.feature.Feature}
@@ -67,12 +92,37 @@ public class JsonDataEventJS extends EventJS {
     public static final String NAME_DESC = "The name of the feature, the namespace will default to 'worldjs' if none is provided";
     @HideFromJS
     public static final String PLACEMENT_DESC = "The placement properties";
+    // Below this, handing the entries to other threads costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 64;
+    private static final int MIN_CHUNK_SIZE = 16;
+    private static final String CONFIGURED_PREFIX = "worldgen/configured_feature/";
+    // How a feature id is referenced in compact json, either by a placed feature or one nested in a config
+    private static final String FEATURE_KEY = "\"feature\":\"";
 
     private final DataPackEventJS parent;
+    @Nullable
+    private final WorldgenDataCache.Recorder recorder;
+    private boolean deduplicate = false;
+    // Everything made by the event, in order, only encoded and handed to the data pack once the event has been posted
+    private final List<PendingEntry> pending = new ArrayList<>();
+    private final EncodeCache encodeCache = new EncodeCache();
+    @Nullable
+    private final DataProfiler profiler = DataProfiler.ENABLED ? new DataProfiler() : null;
+    // The profiler section of each configured feature, so their placed features are attributed to the same type
+    private final Map<String, DataProfiler.Section> featureSections = new HashMap<>();
+    @Nullable
+    private DataProfiler.Section currentSection;
+    // Placed features to add to biomes, by biome set and step, in the order each group was first used
+    private final Map<String, BiomeModifierGroup> biomeModifiers = new LinkedHashMap<>();
+    private final Map<String, JsonArray> placementTemplates = new HashMap<>();
 
     public JsonDataEventJS(DataPackEventJS parent) {
+        this(parent, null);
+    }
+
+    public JsonDataEventJS(DataPackEventJS parent, @Nullable WorldgenDataCache.Recorder recorder) {
         this.parent = parent;
-        DataUtils.setJde(this);
+        this.recorder = recorder;
     }
 
     /**
@@ -90,31 +140,190 @@ public class JsonDataEventJS extends EventJS {
         return DataUtils.modConfiguredFeatures.get();
     }
 
+    @Info(value = "Sets whether configured features made after this which are identical to one made earlier are dropped, defaults to false. Every `feature` id in the data made by this event that names a dropped feature, including placed features added by addons and features nested in other configured features, is pointed at the earlier one instead. Data packs and mods are not rewritten, so only enable this if nothing else references the dropped configured features by name", params = {
+            @Param(name = "enabled", value = "If identical configured features should be collapsed into one")
+    })
+    public void setDeduplicateFeatures(boolean enabled) {
+        deduplicate = enabled;
+    }
+
+    @HideFromJS
+    public EncodeCache encodeCache() {
+        return encodeCache;
+    }
+
+    @HideFromJS
+    @Nullable
+    public DataProfiler profiler() {
+        return profiler;
+    }
+
+    /**
+     * Attributes the time taken to add the json handed over by an addon's {@link ICFeatureMethodHolder} to the holder
+     * <br><br>
+     * Scripts call the holder's own methods directly, so the time the addon spends building its json before handing it
+     * over is not part of this, only of the scripts' total
+     */
+    @HideFromJS
+    public void profileAddon(Object holder, Runnable call) {
+        profiled(profiler == null ? null : profiler.section("addon add", holder.getClass().getSimpleName()), true, call);
+    }
+
+    // Only the outermost call is timed, so nested calls aren't counted twice
+    private void profiled(@Nullable DataProfiler.Section section, boolean counted, Runnable call) {
+        if (section == null || currentSection != null) {
+            call.run();
+            return;
+        }
+        currentSection = section;
+        final long start = System.nanoTime();
+        try {
+            call.run();
+        } finally {
+            currentSection = null;
+            if (counted) {
+                section.call(System.nanoTime() - start);
+            } else {
+                section.time(System.nanoTime() - start);
+            }
+        }
+    }
+
+    @Nullable
+    private DataProfiler.Section featureSection(String name, @Nullable String type) {
+        if (profiler == null) {
+            return null;
+        }
+        final DataProfiler.Section section = profiler.section("feature", type == null ? "unknown" : type.contains(":") ? type : "minecraft:" + type);
+        featureSections.put(name, section);
+        return section;
+    }
+
+    @Nullable
+    private DataProfiler.Section entrySection() {
+        if (currentSection != null || profiler == null) {
+            return currentSection;
+        }
+        return profiler.section("entry", "other");
+    }
+
     @HideFromJS
     public void add(ResourceLocation id, JsonElement data) {
-        parent.addJson(id, data);
+        add(id, CompactJson.write(data));
+    }
+
+    /**
+     * Adds an entry which has already been written as compact json
+     */
+    @HideFromJS
+    public void add(ResourceLocation id, String data) {
+        pending.add(new PendingEntry(id, data, null, deduplicate, entrySection()));
+    }
+
+    /**
+     * Adds an entry whose json is built after the event has been posted, in parallel with other deferred entries
+     * <br><br>
+     * The encoder may be run on another thread, so it must not call into scripts
+     */
+    @HideFromJS
+    public void addDeferred(ResourceLocation id, Supplier<JsonElement> encoder) {
+        pending.add(new PendingEntry(id, null, encoder, deduplicate, entrySection()));
+    }
+
+    private void emit(PendingEntry entry) {
+        final ResourceLocation id = entry.id;
+        final ResourceLocation file = new ResourceLocation(id.getNamespace(), id.getPath() + ".json");
+        final String content = entry.json;
+        if (entry.section != null) {
+            entry.section.wrote(content.length());
+        }
+        parent.add(file, content);
+        if (recorder != null) {
+            recorder.record(file, content);
+        }
+    }
+
+    private void addPlaced(String name, PlacedFeatureBuilder builder) {
+        final ResourceLocation id = DataUtils.placedFeatureName(name);
+        final PendingEntry entry = new PendingEntry(id, builder.toCompactJson(), null, deduplicate, entrySection());
+        entry.target = builder.feature;
+        pending.add(entry);
+    }
+
+    /**
+     * Marks a file read while generating data, so that the {@link WorldgenDataCache} is invalidated when it changes
+     */
+    @HideFromJS
+    public void trackInput(Path path) {
+        if (recorder != null) {
+            recorder.trackInput(path);
+        }
+    }
+
+    @Info(value = "Marks a file the scripts read while generating data, such as a mod config, so that data cached with `-Dworldjs.enableDataCache=true` is regenerated when it changes. Files outside of `kubejs/config` and the scripts aren't checked otherwise", params = {
+            @Param(name = "file", value = "The path of the file, relative to the game directory, e.g. `config/mymod-common.toml`")
+    })
+    public void trackFile(String file) {
+        final Path directory = FMLPaths.GAMEDIR.get();
+        final Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory)) {
+            ScriptType.SERVER.console.error("Tracked file " + file + " is outside of the game directory");
+            return;
+        }
+        trackInput(path);
     }
 
     @HideFromJS
     public void finishFeature(String name, String type, JsonObject config, Placement placement) {
-        final JsonObject json = new JsonObject();
-        json.addProperty("type", type);
-        json.add("config", config);
-        finishFeature(name, json, placement);
+        profiled(featureSection(name, type), true, () -> {
+            final JsonObject json = new JsonObject();
+            json.addProperty("type", type);
+            json.add("config", config);
+            finishFeature(name, json, placement);
+        });
     }
 
     @HideFromJS
     public void finishFeature(String name, String type, JsonObject config) {
-        final JsonObject json = new JsonObject();
-        json.addProperty("type", type);
-        json.add("config", config);
-        add(DataUtils.configuredFeatureName(name), json);
+        profiled(featureSection(name, type), true, () -> {
+            final JsonObject json = new JsonObject();
+            json.addProperty("type", type);
+            json.add("config", config);
+            add(DataUtils.configuredFeatureName(name), json);
+        });
+    }
+
+    /**
+     * Defers building the config, see {@link #addDeferred(ResourceLocation, Supplier)}
+     */
+    @HideFromJS
+    public void finishFeature(String name, String type, Supplier<JsonObject> config, Placement placement) {
+        profiled(featureSection(name, type), true, () -> {
+            finishFeature(name, type, config);
+            placedFeature(name, placement);
+        });
+    }
+
+    /**
+     * Defers building the config, see {@link #addDeferred(ResourceLocation, Supplier)}
+     */
+    @HideFromJS
+    public void finishFeature(String name, String type, Supplier<JsonObject> config) {
+        profiled(featureSection(name, type), true, () -> addDeferred(DataUtils.configuredFeatureName(name), () -> {
+            final JsonObject json = new JsonObject();
+            json.addProperty("type", type);
+            json.add("config", config.get());
+            return json;
+        }));
     }
 
     @HideFromJS
     public void finishFeature(String name, JsonObject configured, Placement placement) {
-        add(DataUtils.configuredFeatureName(name), configured);
-        add(DataUtils.placedFeatureName(name), Util.make(new PlacedFeatureBuilder(name), placement).toJson());
+        final JsonElement type = configured.get("type");
+        profiled(featureSection(name, type != null && type.isJsonPrimitive() ? type.getAsString() : null), true, () -> {
+            add(DataUtils.configuredFeatureName(name), configured);
+            addPlaced(name, new PlacedFeatureBuilder(name).apply(placement));
+        });
     }
 
     @Info(value = "Creates a configured feature of the given type with the given config and the matching placed feature", params = {
@@ -136,6 +345,51 @@ public class JsonDataEventJS extends EventJS {
         finishFeature(name, type, featureConfig);
     }
 
+    @Info(value = "Adds placed features to biomes in the given generation step. Every call sharing the same biomes and step is combined into a single `forge:add_features` biome modifier", params = {
+            @Param(name = "biomes", value = "A biome tag, e.g. `#minecraft:is_overworld`, a biome id or a list of biome ids"),
+            @Param(name = "step", value = "The generation step the features are placed in, e.g. `underground_ores`"),
+            @Param(name = "placedFeatures", value = "The names of the placed features, the namespace will default to 'worldjs' if none is provided")
+    })
+    public void addToBiomes(Object biomes, GenerationStep.Decoration step, String[] placedFeatures) {
+        final JsonElement biomeSet;
+        final List<?> list = biomes instanceof CharSequence ? List.of(biomes.toString()) : ListJS.orSelf(biomes);
+        if (list.size() == 1) {
+            biomeSet = new JsonPrimitive(list.get(0).toString().trim());
+        } else {
+            // Sorted, so the same biomes given in any order share a modifier
+            final Set<String> ids = new TreeSet<>();
+            for (Object o : list) {
+                final String id = String.valueOf(o).trim();
+                if (id.startsWith("#")) {
+                    ScriptType.SERVER.console.error("Biome tag " + id + " can't be part of a list of biomes, skipping it");
+                } else {
+                    ids.add(id);
+                }
+            }
+            final JsonArray array = new JsonArray(ids.size());
+            ids.forEach(array::add);
+            biomeSet = array;
+        }
+        final BiomeModifierGroup group = biomeModifiers.computeIfAbsent(biomeSet + "|" + step.getSerializedName(), k -> new BiomeModifierGroup(biomeSet, step, new LinkedHashSet<>()));
+        for (String feature : placedFeatures) {
+            group.features().add(String.join(":", DataUtils.normalizeName(feature)));
+        }
+    }
+
+    @Info(value = "Defines a named list of placement modifiers, which placements can add with `template(name)`. The list is built once and shared by every placed feature using it", params = {
+            @Param(name = "name", value = "The name of the template"),
+            @Param(name = "placement", value = "The placement modifiers of the template")
+    })
+    public void definePlacementTemplate(String name, Placement placement) {
+        placementTemplates.put(name, new PlacedFeatureBuilder(WorldJS.MODID + ":template").apply(placement).getPlacements());
+    }
+
+    @HideFromJS
+    @Nullable
+    public JsonArray getPlacementTemplate(String name) {
+        return placementTemplates.get(name);
+    }
+
     @Info(value = "Creates a placed feature with the given name which places a configured feature with the same name", params = {
             @Param(name = "name", value = "The name of the placed feature and the ")
     })
@@ -144,7 +398,13 @@ public class JsonDataEventJS extends EventJS {
     }
 
     public void placedFeature(String name, String configuredFeatureToPlace, Placement placement) {
-        add(DataUtils.placedFeatureName(name), Util.make(new PlacedFeatureBuilder(configuredFeatureToPlace), placement).toJson());
+        // Placed features made alongside their configured feature are part of the same call
+        final DataProfiler.Section section = featureSections.get(configuredFeatureToPlace);
+        if (section != null) {
+            profiled(section, false, () -> addPlaced(name, new PlacedFeatureBuilder(configuredFeatureToPlace).apply(placement)));
+        } else {
+            profiled(profiler == null ? null : profiler.section("feature", "placed_feature"), true, () -> addPlaced(name, new PlacedFeatureBuilder(configuredFeatureToPlace).apply(placement)));
+        }
     }
 
     /**
@@ -527,15 +787,17 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.SculkPatchConfiguration#CODEC}
      */
     public void sculkPatch(String name, int chargeCount, int amountPerCharge, int spreadAttempts, int growthRounds, int spreadRounds, IntProvider extraRareGrowths, float catalystChance) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("charge_count", chargeCount);
-        config.addProperty("amount_per_charge", amountPerCharge);
-        config.addProperty("spread_attempts", spreadAttempts);
-        config.addProperty("growth_rounds", growthRounds);
-        config.addProperty("spread_rounds", spreadAttempts);
-        config.add("extra_rare_growths", DataUtils.encodeIntProvider(extraRareGrowths));
-        config.addProperty("spread_rounds", spreadAttempts);
-        finishFeature(name, "sculk_patch", config);
+        finishFeature(name, "sculk_patch", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("charge_count", chargeCount);
+            config.addProperty("amount_per_charge", amountPerCharge);
+            config.addProperty("spread_attempts", spreadAttempts);
+            config.addProperty("growth_rounds", growthRounds);
+            config.addProperty("spread_rounds", spreadAttempts);
+            config.add("extra_rare_growths", DataUtils.Shared.encodeIntProvider(extraRareGrowths));
+            config.addProperty("spread_rounds", spreadAttempts);
+            return config;
+        });
     }
 
     // Mention WorldJSBindings#targetBlockState()
@@ -552,9 +814,11 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.ReplaceBlockConfiguration#CODEC}
      */
     public void replaceSingleBlock(String name, OreConfiguration.TargetBlockState[] blockTargets) {
-        final JsonObject config = new JsonObject();
-        config.add("targets", DataUtils.encodeTargetBlockStateArray(blockTargets));
-        finishFeature(name, "replace_single_block", config);
+        finishFeature(name, "replace_single_block", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("targets", DataUtils.Shared.encodeTargetBlockStateArray(blockTargets));
+            return config;
+        });
     }
 
     /**
@@ -569,11 +833,53 @@ public class JsonDataEventJS extends EventJS {
      * {@link OreConfiguration#CODEC}
      */
     public void ore(String name, OreConfiguration.TargetBlockState[] blockTargets, int size, float discardOnAirChance, boolean scattered) {
-        final JsonObject config = new JsonObject();
-        config.add("targets", DataUtils.encodeTargetBlockStateArray(blockTargets));
-        config.addProperty("size", size);
-        config.addProperty("discard_chance_on_air_exposure", discardOnAirChance);
-        finishFeature(name, scattered ? "scattered_ore" : "ore", config);
+        finishFeature(name, scattered ? "scattered_ore" : "ore", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("targets", DataUtils.Shared.encodeTargetBlockStateArray(blockTargets));
+            config.addProperty("size", size);
+            config.addProperty("discard_chance_on_air_exposure", discardOnAirChance);
+            return config;
+        });
+    }
+
+    @Info(value = "Creates an ore and its placed feature for every row of a `.csv` or `.json` table in the kubejs folder. See the wiki for the columns", params = {
+            @Param(name = "file", value = "The path of the table, relative to the kubejs folder, e.g. `data/ores.csv`")
+    })
+    public void oreTable(String file) {
+        final Path path = KubeJSPaths.DIRECTORY.resolve(file).normalize();
+        if (!path.startsWith(KubeJSPaths.DIRECTORY)) {
+            ScriptType.SERVER.console.error("Ore table " + file + " is outside of the kubejs folder");
+            return;
+        }
+        trackInput(path);
+        try {
+            final long start = System.nanoTime();
+            final List<OreTable.Entry> entries = OreTable.parse(OreTable.readRows(path), file);
+            if (profiler != null) {
+                profiler.section("ore table", file).call(System.nanoTime() - start);
+            }
+            oreTable(entries);
+        } catch (IOException | RuntimeException e) {
+            ScriptType.SERVER.console.error("Unable to read ore table " + file + ": " + e);
+        }
+    }
+
+    @Info(value = "Creates an ore and its placed feature for every row, each row being an object with the same columns as an ore table file", params = {
+            @Param(name = "rows", value = "The rows of the table")
+    })
+    public void oreTable(List<Map<String, Object>> rows) {
+        final long start = System.nanoTime();
+        final List<OreTable.Entry> entries = OreTable.parse(rows, "from script");
+        if (profiler != null) {
+            profiler.section("ore table", "from script").call(System.nanoTime() - start);
+        }
+        oreTable(entries);
+    }
+
+    private void oreTable(List<OreTable.Entry> entries) {
+        for (OreTable.Entry entry : entries) {
+            ore(entry.name(), entry.targets(), entry.size(), entry.discardChance(), entry.scattered(), entry);
+        }
     }
 
     /**
@@ -588,10 +894,12 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.LayerConfiguration#CODEC}
      */
     public void fillLayer(String name, int height, BlockState blockState) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("height", height);
-        config.add("state", DataUtils.encodeBlockState(blockState));
-        finishFeature(name, "fill_layer", config);
+        finishFeature(name, "fill_layer", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("height", height);
+            config.add("state", DataUtils.Shared.encodeBlockState(blockState));
+            return config;
+        });
     }
 
     /**
@@ -606,11 +914,13 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.ReplaceSphereConfiguration#CODEC}
      */
     public void netherrackReplaceBlobs(String name, BlockState targetState, BlockState replaceState, IntProvider radius) {
-        final JsonObject config = new JsonObject();
-        config.add("target", DataUtils.encodeBlockState(targetState));
-        config.add("state", DataUtils.encodeBlockState(replaceState));
-        config.add("radius", DataUtils.encodeIntProvider(radius));
-        finishFeature(name, "netherrack_replace_blobs", config);
+        finishFeature(name, "netherrack_replace_blobs", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("target", DataUtils.Shared.encodeBlockState(targetState));
+            config.add("state", DataUtils.Shared.encodeBlockState(replaceState));
+            config.add("radius", DataUtils.Shared.encodeIntProvider(radius));
+            return config;
+        });
     }
 
     /**
@@ -625,12 +935,14 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.DeltaFeatureConfiguration#CODEC}
      */
     public void deltaFeature(String name, BlockState contentsState, BlockState rimState, IntProvider size, IntProvider rimSize) {
-        final JsonObject config = new JsonObject();
-        config.add("contents", DataUtils.encodeBlockState(contentsState));
-        config.add("rim", DataUtils.encodeBlockState(rimState));
-        config.add("size", DataUtils.encodeIntProvider(size));
-        config.add("rimSize", DataUtils.encodeIntProvider(rimSize));
-        finishFeature(name, "delta_feature", config);
+        finishFeature(name, "delta_feature", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("contents", DataUtils.Shared.encodeBlockState(contentsState));
+            config.add("rim", DataUtils.Shared.encodeBlockState(rimState));
+            config.add("size", DataUtils.Shared.encodeIntProvider(size));
+            config.add("rimSize", DataUtils.Shared.encodeIntProvider(rimSize));
+            return config;
+        });
     }
 
     /**
@@ -645,10 +957,12 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.ColumnFeatureConfiguration#CODEC}
      */
     public void basaltColumns(String name, IntProvider reach, IntProvider height) {
-        final JsonObject config = new JsonObject();
-        config.add("reach", DataUtils.encodeIntProvider(reach));
-        config.add("height", DataUtils.encodeIntProvider(height));
-        finishFeature(name, "basalt_columns", config);
+        finishFeature(name, "basalt_columns", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("reach", DataUtils.Shared.encodeIntProvider(reach));
+            config.add("height", DataUtils.Shared.encodeIntProvider(height));
+            return config;
+        });
     }
 
     /**
@@ -663,11 +977,13 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.TwistingVinesConfig#CODEC}
      */
     public void twistingVines(String name, int spreadWidth, int spreadHeight, int maxHeight) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("spread_width", spreadWidth);
-        config.addProperty("spread_height", spreadHeight);
-        config.addProperty("max_height", maxHeight);
-        finishFeature(name, "twisting_vines", config);
+        finishFeature(name, "twisting_vines", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("spread_width", spreadWidth);
+            config.addProperty("spread_height", spreadHeight);
+            config.addProperty("max_height", maxHeight);
+            return config;
+        });
     }
 
     /**
@@ -682,9 +998,11 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.BlockStateConfiguration#CODEC}
      */
     public void forestRock(String name, BlockState state) {
-        final JsonObject config = new JsonObject();
-        config.add("state", DataUtils.encodeBlockState(state));
-        finishFeature(name, "forest_rock", config);
+        finishFeature(name, "forest_rock", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("state", DataUtils.Shared.encodeBlockState(state));
+            return config;
+        });
     }
 
     /**
@@ -699,9 +1017,11 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.BlockStateConfiguration#CODEC}
      */
     public void iceberg(String name, BlockState state) {
-        final JsonObject config = new JsonObject();
-        config.add("state", DataUtils.encodeBlockState(state));
-        finishFeature(name, "iceberg", config);
+        finishFeature(name, "iceberg", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("state", DataUtils.Shared.encodeBlockState(state));
+            return config;
+        });
     }
 
     /**
@@ -716,12 +1036,14 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.EndGatewayConfiguration#CODEC}
      */
     public void endGateway(String name, @Nullable BlockPos exit, boolean exact) {
-        final JsonObject config = new JsonObject();
-        if (exit != null) {
-            config.add("exit", DataUtils.encodeBlockPos(exit));
-        }
-        config.addProperty("exact", exact);
-        finishFeature(name, "end_gateway", config);
+        finishFeature(name, "end_gateway", () -> {
+            final JsonObject config = new JsonObject();
+            if (exit != null) {
+                config.add("exit", DataUtils.Shared.encodeBlockPos(exit));
+            }
+            config.addProperty("exact", exact);
+            return config;
+        });
     }
 
     /**
@@ -736,9 +1058,11 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.ProbabilityFeatureConfiguration#CODEC}
      */
     public void seaGrass(String name, float probability) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("probability", probability);
-        finishFeature(name, "seagrass", config);
+        finishFeature(name, "seagrass", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("probability", probability);
+            return config;
+        });
     }
 
     /**
@@ -753,9 +1077,11 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.ProbabilityFeatureConfiguration#CODEC}
      */
     public void bamboo(String name, float probability) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("probability", probability);
-        finishFeature(name, "bamboo", config);
+        finishFeature(name, "bamboo", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("probability", probability);
+            return config;
+        });
     }
 
     /**
@@ -770,7 +1096,7 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.RandomPatchConfiguration#CODEC}
      */
     public void flower(String name, @Nullable Integer tries, @Nullable Integer xzSpread, @Nullable Integer ySpread, String placedFeature) {
-        finishFeature(name, "flower", DataUtils.randomPatchConfig(tries, xzSpread, ySpread, placedFeature));
+        finishFeature(name, "flower", () -> DataUtils.randomPatchConfig(tries, xzSpread, ySpread, placedFeature));
     }
 
     /**
@@ -785,7 +1111,7 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.RandomPatchConfiguration#CODEC}
      */
     public void noBonemealFlower(String name, @Nullable Integer tries, @Nullable Integer xzSpread, @Nullable Integer ySpread, String placedFeature) {
-        finishFeature(name, "no_bonemeal_flower", DataUtils.randomPatchConfig(tries, xzSpread, ySpread, placedFeature));
+        finishFeature(name, "no_bonemeal_flower", () -> DataUtils.randomPatchConfig(tries, xzSpread, ySpread, placedFeature));
     }
 
     /**
@@ -800,7 +1126,7 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.RandomPatchConfiguration#CODEC}
      */
     public void randomPatch(String name, @Nullable Integer tries, @Nullable Integer xzSpread, @Nullable Integer ySpread, String placedFeature) {
-        finishFeature(name, "random_patch", DataUtils.randomPatchConfig(tries, xzSpread, ySpread, placedFeature));
+        finishFeature(name, "random_patch", () -> DataUtils.randomPatchConfig(tries, xzSpread, ySpread, placedFeature));
     }
 
     /**
@@ -815,11 +1141,13 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.UnderwaterMagmaConfiguration#CODEC}
      */
     public void underwaterMagma(String name, int searchRange, int placementRadius, float placementProbability) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("floor_search_range", searchRange);
-        config.addProperty("placement_radius_around_floor", placementRadius);
-        config.addProperty("placement_probability_per_valid_position", placementProbability);
-        finishFeature(name, "underwater_magma", config);
+        finishFeature(name, "underwater_magma", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("floor_search_range", searchRange);
+            config.addProperty("placement_radius_around_floor", placementRadius);
+            config.addProperty("placement_probability_per_valid_position", placementProbability);
+            return config;
+        });
     }
 
     /**
@@ -834,13 +1162,16 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.SpikeConfiguration#CODEC}
      */
     public void endSpike(String name, @Nullable Boolean invulnerableCrystal, Builders.EndSpike.Builder endSpikes, @Nullable BlockPos beamTarget) {
-        final JsonObject config = new JsonObject();
-        DataUtils.addProperty(config, "crystal_invulnerable", invulnerableCrystal);
-        config.add("spikes", Util.make(new Builders.EndSpike(), endSpikes).write());
-        if (beamTarget != null) {
-            config.add("crystal_beam_target", DataUtils.encodeBlockPos(beamTarget));
-        }
-        finishFeature(name, "end_spike", config);
+        final JsonElement spikes = Util.make(new Builders.EndSpike(), endSpikes).write(); // Calls into the script, so can't be deferred
+        finishFeature(name, "end_spike", () -> {
+            final JsonObject config = new JsonObject();
+            DataUtils.addProperty(config, "crystal_invulnerable", invulnerableCrystal);
+            config.add("spikes", spikes);
+            if (beamTarget != null) {
+                config.add("crystal_beam_target", DataUtils.Shared.encodeBlockPos(beamTarget));
+            }
+            return config;
+        });
     }
 
     /**
@@ -855,7 +1186,7 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.CountConfiguration#CODEC}
      */
     public void seaPickle(String name, IntProvider count) {
-        finishFeature(name, "sea_pickle", DataUtils.countConfig(count));
+        finishFeature(name, "sea_pickle", () -> DataUtils.countConfig(count));
     }
 
     /**
@@ -870,14 +1201,16 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.HugeFungusConfiguration#CODEC}
      */
     public void hugeFungus(String name, BlockState baseBlock, BlockState stem, BlockState hat, BlockState decor, BlockPredicate replaceableBlocks, boolean planted) {
-        final JsonObject config = new JsonObject();
-        config.add("valid_base_block", DataUtils.encodeBlockState(baseBlock));
-        config.add("stem_state", DataUtils.encodeBlockState(stem));
-        config.add("hat_state", DataUtils.encodeBlockState(hat));
-        config.add("decor_state", DataUtils.encodeBlockState(decor));
-        config.add("replaceable_blocks", DataUtils.encodeBlockPredicate(replaceableBlocks));
-        config.addProperty("planted", planted);
-        finishFeature(name, "huge_fungus", config);
+        finishFeature(name, "huge_fungus", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("valid_base_block", DataUtils.Shared.encodeBlockState(baseBlock));
+            config.add("stem_state", DataUtils.Shared.encodeBlockState(stem));
+            config.add("hat_state", DataUtils.Shared.encodeBlockState(hat));
+            config.add("decor_state", DataUtils.Shared.encodeBlockState(decor));
+            config.add("replaceable_blocks", DataUtils.Shared.encodeBlockPredicate(replaceableBlocks));
+            config.addProperty("planted", planted);
+            return config;
+        });
     }
 
     /**
@@ -920,19 +1253,21 @@ public class JsonDataEventJS extends EventJS {
             int maxDistFromEdgeAffectingChanceOfDripstoneColumn,
             int maxDistFromCenterAffectingHeightBias
     ) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("floor_to_ceiling_search_range", searchRange);
-        config.add("height", DataUtils.encodeIntProvider(height));
-        config.add("radius", DataUtils.encodeIntProvider(radius));
-        config.addProperty("max_stalagmite_stalactite_height_diff", maxHeightDifference);
-        config.addProperty("height_deviation", heightDeviation);
-        config.add("dripstone_block_layer_thickness", DataUtils.encodeIntProvider(dripstoneBlockLayerThickness));
-        config.add("density", DataUtils.encodeFloatProvider(density));
-        config.add("wetness", DataUtils.encodeFloatProvider(wetness));
-        config.addProperty("chance_of_dripstone_column_at_max_distance_from_center", chanceOfColumnAtMaxDistFromCenter);
-        config.addProperty("max_distance_from_edge_affecting_chance_of_dripstone_column", maxDistFromEdgeAffectingChanceOfDripstoneColumn);
-        config.addProperty("max_distance_from_center_affecting_height_bias", maxDistFromCenterAffectingHeightBias);
-        finishFeature(name, "dripstone_cluster", config);
+        finishFeature(name, "dripstone_cluster", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("floor_to_ceiling_search_range", searchRange);
+            config.add("height", DataUtils.Shared.encodeIntProvider(height));
+            config.add("radius", DataUtils.Shared.encodeIntProvider(radius));
+            config.addProperty("max_stalagmite_stalactite_height_diff", maxHeightDifference);
+            config.addProperty("height_deviation", heightDeviation);
+            config.add("dripstone_block_layer_thickness", DataUtils.Shared.encodeIntProvider(dripstoneBlockLayerThickness));
+            config.add("density", DataUtils.Shared.encodeFloatProvider(density));
+            config.add("wetness", DataUtils.Shared.encodeFloatProvider(wetness));
+            config.addProperty("chance_of_dripstone_column_at_max_distance_from_center", chanceOfColumnAtMaxDistFromCenter);
+            config.addProperty("max_distance_from_edge_affecting_chance_of_dripstone_column", maxDistFromEdgeAffectingChanceOfDripstoneColumn);
+            config.addProperty("max_distance_from_center_affecting_height_bias", maxDistFromCenterAffectingHeightBias);
+            return config;
+        });
     }
 
     /**
@@ -970,17 +1305,19 @@ public class JsonDataEventJS extends EventJS {
             int minWindRadius,
             float minWindBluntness
     ) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("floor_to_ceiling_search_range", searchRange);
-        config.add("column_radius", DataUtils.encodeIntProvider(columnRadius));
-        config.add("height_scale", DataUtils.encodeFloatProvider(heightScale));
-        config.addProperty("max_column_radius_to_cave_height_ratio", maxColumnRadiusToCaveHeightRatio);
-        config.add("stalactite_bluntness", DataUtils.encodeFloatProvider(stalactiteBluntness));
-        config.add("stalagmite_bluntness", DataUtils.encodeFloatProvider(stalagmiteBluntness));
-        config.add("wind_speed", DataUtils.encodeFloatProvider(windSpeed));
-        config.addProperty("min_radius_for_wind", minWindRadius);
-        config.addProperty("min_bluntness_for_wind", minWindBluntness);
-        finishFeature(name, "large_dripstone", config);
+        finishFeature(name, "large_dripstone", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("floor_to_ceiling_search_range", searchRange);
+            config.add("column_radius", DataUtils.Shared.encodeIntProvider(columnRadius));
+            config.add("height_scale", DataUtils.Shared.encodeFloatProvider(heightScale));
+            config.addProperty("max_column_radius_to_cave_height_ratio", maxColumnRadiusToCaveHeightRatio);
+            config.add("stalactite_bluntness", DataUtils.Shared.encodeFloatProvider(stalactiteBluntness));
+            config.add("stalagmite_bluntness", DataUtils.Shared.encodeFloatProvider(stalagmiteBluntness));
+            config.add("wind_speed", DataUtils.Shared.encodeFloatProvider(windSpeed));
+            config.addProperty("min_radius_for_wind", minWindRadius);
+            config.addProperty("min_bluntness_for_wind", minWindBluntness);
+            return config;
+        });
     }
 
     /**
@@ -994,12 +1331,14 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.PointedDripstoneConfiguration#CODEC}
      */
     public void pointedDripstone(String name, @Nullable Float tallerDripstoneChance, @Nullable Float directionalSpreadChance, @Nullable Float spreadRadius2Chance, @Nullable Float spreadRadius3Chance) {
-        final JsonObject config = new JsonObject();
-        DataUtils.addProperty(config, "chance_of_taller_dripstone", tallerDripstoneChance);
-        DataUtils.addProperty(config, "chance_of_directional_spread", directionalSpreadChance);
-        DataUtils.addProperty(config, "chance_of_spread_radius2", spreadRadius2Chance);
-        DataUtils.addProperty(config, "chance_of_spread_radius3", spreadRadius3Chance);
-        finishFeature(name, "pointed_dripstone", config);
+        finishFeature(name, "pointed_dripstone", () -> {
+            final JsonObject config = new JsonObject();
+            DataUtils.addProperty(config, "chance_of_taller_dripstone", tallerDripstoneChance);
+            DataUtils.addProperty(config, "chance_of_directional_spread", directionalSpreadChance);
+            DataUtils.addProperty(config, "chance_of_spread_radius2", spreadRadius2Chance);
+            DataUtils.addProperty(config, "chance_of_spread_radius3", spreadRadius3Chance);
+            return config;
+        });
     }
 
     /**
@@ -1014,10 +1353,12 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.LakeFeature.Configuration#CODEC}
      */
     public void lake(String name, BlockStateProvider fluid, BlockStateProvider barrier) {
-        final JsonObject config = new JsonObject();
-        config.add("fluid", DataUtils.encodeBlockStateProvider(fluid));
-        config.add("barrier", DataUtils.encodeBlockStateProvider(barrier));
-        finishFeature(name, "lake", config);
+        finishFeature(name, "lake", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("fluid", DataUtils.Shared.encodeBlockStateProvider(fluid));
+            config.add("barrier", DataUtils.Shared.encodeBlockStateProvider(barrier));
+            return config;
+        });
     }
 
     /**
@@ -1032,12 +1373,14 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.DiskConfiguration#CODEC}
      */
     public void disk(String name, RuleBasedBlockStateProvider stateProvider, BlockPredicate target, IntProvider radius, int halfHeight) {
-        final JsonObject config = new JsonObject();
-        config.add("state_provider", DataUtils.encodeRuleBasedBlockStateProvider(stateProvider));
-        config.add("target", DataUtils.encodeBlockPredicate(target));
-        config.add("radius", DataUtils.encodeIntProvider(radius));
-        config.addProperty("half_height", halfHeight);
-        finishFeature(name, "disk", config);
+        finishFeature(name, "disk", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("state_provider", DataUtils.Shared.encodeRuleBasedBlockStateProvider(stateProvider));
+            config.add("target", DataUtils.Shared.encodeBlockPredicate(target));
+            config.add("radius", DataUtils.Shared.encodeIntProvider(radius));
+            config.addProperty("half_height", halfHeight);
+            return config;
+        });
     }
 
     /**
@@ -1052,9 +1395,11 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.SimpleBlockConfiguration#CODEC}
      */
     public void simpleBlock(String name, BlockStateProvider toPlace) {
-        final JsonObject config = new JsonObject();
-        config.add("to_place", DataUtils.encodeBlockStateProvider(toPlace));
-        finishFeature(name, "simple_block", config);
+        finishFeature(name, "simple_block", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("to_place", DataUtils.Shared.encodeBlockStateProvider(toPlace));
+            return config;
+        });
     }
 
     /**
@@ -1084,17 +1429,19 @@ public class JsonDataEventJS extends EventJS {
             @Nullable Integer holeCount,
             Block[] validBlocks
     ) {
-        final JsonObject config = new JsonObject();
-        config.add("state", DataUtils.encode(FluidState.CODEC, fluid));
-        config.addProperty("requires_block_below", requiresBlockBelow);
-        DataUtils.addProperty(config, "rock_count", rockCount);
-        DataUtils.addProperty(config, "hole_count", holeCount);
-        final JsonArray blocks = new JsonArray(validBlocks.length);
-        for (Block block : validBlocks) {
-            blocks.add(RegistryInfo.BLOCK.getId(block).toString());
-        }
-        config.add("valid_blocks", blocks);
-        finishFeature(name, "spring_feature", config);
+        finishFeature(name, "spring_feature", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("state", DataUtils.encodeShared(FluidState.CODEC, fluid));
+            config.addProperty("requires_block_below", requiresBlockBelow);
+            DataUtils.addProperty(config, "rock_count", rockCount);
+            DataUtils.addProperty(config, "hole_count", holeCount);
+            final JsonArray blocks = new JsonArray(validBlocks.length);
+            for (Block block : validBlocks) {
+                blocks.add(RegistryInfo.BLOCK.getId(block).toString());
+            }
+            config.add("valid_blocks", blocks);
+            return config;
+        });
     }
 
     /**
@@ -1109,9 +1456,11 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.BlockPileConfiguration#CODEC}
      */
     public void blockPile(String name, BlockStateProvider stateProvider) {
-        final JsonObject config = new JsonObject();
-        config.add("state_provider", DataUtils.encodeBlockStateProvider(stateProvider));
-        finishFeature(name, "block_pile", config);
+        finishFeature(name, "block_pile", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("state_provider", DataUtils.Shared.encodeBlockStateProvider(stateProvider));
+            return config;
+        });
     }
 
     /**
@@ -1159,21 +1508,23 @@ public class JsonDataEventJS extends EventJS {
             int verticalWaterAllowedForTree,
             BlockPredicate allowedTreePosition
     ) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("feature", treeFeature);
-        config.addProperty("required_vertical_space_for_tree", verticalSpaceRequiredForTree);
-        config.addProperty("root_radius", rootRadius);
-        config.addProperty("root_replaceable", rootReplaceableBlockTag);
-        config.add("root_state_provider", DataUtils.encodeBlockStateProvider(rootState));
-        config.addProperty("root_placement_attempts", rootPlacementAttempts);
-        config.addProperty("root_column_max_height", rootMaxHeight);
-        config.addProperty("hanging_root_radius", hangingRootRadius);
-        config.addProperty("hanging_roots_vertical_span", hangingRootsVerticalSpan);
-        config.add("hanging_roots_state_provider", DataUtils.encodeBlockStateProvider(hangingRootState));
-        config.addProperty("hanging_root_placement_attempts", hangingRootPlacementAttempts);
-        config.addProperty("allowed_vertical_water_for_tree", verticalWaterAllowedForTree);
-        config.add("allowed_tree_position", DataUtils.encodeBlockPredicate(allowedTreePosition));
-        finishFeature(name, "root_system", config);
+        finishFeature(name, "root_system", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("feature", treeFeature);
+            config.addProperty("required_vertical_space_for_tree", verticalSpaceRequiredForTree);
+            config.addProperty("root_radius", rootRadius);
+            config.addProperty("root_replaceable", rootReplaceableBlockTag);
+            config.add("root_state_provider", DataUtils.Shared.encodeBlockStateProvider(rootState));
+            config.addProperty("root_placement_attempts", rootPlacementAttempts);
+            config.addProperty("root_column_max_height", rootMaxHeight);
+            config.addProperty("hanging_root_radius", hangingRootRadius);
+            config.addProperty("hanging_roots_vertical_span", hangingRootsVerticalSpan);
+            config.add("hanging_roots_state_provider", DataUtils.Shared.encodeBlockStateProvider(hangingRootState));
+            config.addProperty("hanging_root_placement_attempts", hangingRootPlacementAttempts);
+            config.addProperty("allowed_vertical_water_for_tree", verticalWaterAllowedForTree);
+            config.add("allowed_tree_position", DataUtils.Shared.encodeBlockPredicate(allowedTreePosition));
+            return config;
+        });
     }
 
     /**
@@ -1207,11 +1558,13 @@ public class JsonDataEventJS extends EventJS {
     }
 
     private void hugeShroom(String name, BlockStateProvider cap, BlockStateProvider stem, @Nullable Integer foliageRadius, boolean red) {
-        final JsonObject config = new JsonObject();
-        config.add("cap_provider", DataUtils.encodeBlockStateProvider(cap));
-        config.add("stem_provider", DataUtils.encodeBlockStateProvider(stem));
-        DataUtils.addProperty(config, "foliage_radius", foliageRadius);
-        finishFeature(name, red ? "huge_red_mushroom" : "huge_brown_mushroom", config);
+        finishFeature(name, red ? "huge_red_mushroom" : "huge_brown_mushroom", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("cap_provider", DataUtils.Shared.encodeBlockStateProvider(cap));
+            config.add("stem_provider", DataUtils.Shared.encodeBlockStateProvider(stem));
+            DataUtils.addProperty(config, "foliage_radius", foliageRadius);
+            return config;
+        });
     }
 
     /**
@@ -1226,12 +1579,14 @@ public class JsonDataEventJS extends EventJS {
      * {@link BlockColumnConfiguration#CODEC}
      */
     public void blockColumn(String name, BlockColumnConfiguration.Layer[] layers, Direction direction, BlockPredicate allowedPlacement, boolean prioritizeTip) {
-        final JsonObject config = new JsonObject();
-        config.add("layers", DataUtils.encodeBlockColumnLayerArray(layers));
-        config.addProperty("direction", direction.getSerializedName());
-        config.add("allowed_placement", DataUtils.encodeBlockPredicate(allowedPlacement));
-        config.addProperty("prioritize_tip", prioritizeTip);
-        finishFeature(name, "block_column", config);
+        finishFeature(name, "block_column", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("layers", DataUtils.Shared.encodeBlockColumnLayerArray(layers));
+            config.addProperty("direction", direction.getSerializedName());
+            config.add("allowed_placement", DataUtils.Shared.encodeBlockPredicate(allowedPlacement));
+            config.addProperty("prioritize_tip", prioritizeTip);
+            return config;
+        });
     }
 
     /**
@@ -1246,11 +1601,13 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.NetherForestVegetationConfig#CODEC}
      */
     public void netherForestVegetation(String name, BlockStateProvider stateProvider, int spreadWidth, int spreadHeight) {
-        final JsonObject config = new JsonObject();
-        config.add("state_provider", DataUtils.encodeBlockStateProvider(stateProvider));
-        config.addProperty("spread_width", spreadWidth);
-        config.addProperty("spread_height", spreadHeight);
-        finishFeature(name, "nether_forest_vegetation", config);
+        finishFeature(name, "nether_forest_vegetation", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("state_provider", DataUtils.Shared.encodeBlockStateProvider(stateProvider));
+            config.addProperty("spread_width", spreadWidth);
+            config.addProperty("spread_height", spreadHeight);
+            return config;
+        });
     }
 
     /**
@@ -1265,9 +1622,11 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.SimpleRandomFeatureConfiguration#CODEC}
      */
     public void simpleRandomSelector(String name, String[] features) {
-        final JsonObject config = new JsonObject();
-        config.add("features", DataUtils.encodeStringArray(features));
-        finishFeature(name, "simple_random_selector", config);
+        finishFeature(name, "simple_random_selector", () -> {
+            final JsonObject config = new JsonObject();
+            config.add("features", DataUtils.encodeStringArray(features));
+            return config;
+        });
     }
 
     /**
@@ -1282,10 +1641,12 @@ public class JsonDataEventJS extends EventJS {
      * {@link net.minecraft.world.level.levelgen.feature.configurations.RandomBooleanFeatureConfiguration#CODEC}
      */
     public void randomBooleanSelector(String name, String ifTrue, String ifFalse) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("feature_true", ifTrue);
-        config.addProperty("feature_false", ifFalse);
-        finishFeature(name, "random_boolean_selector", config);
+        finishFeature(name, "random_boolean_selector", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("feature_true", ifTrue);
+            config.addProperty("feature_false", ifFalse);
+            return config;
+        });
     }
 
     /**
@@ -1327,18 +1688,20 @@ public class JsonDataEventJS extends EventJS {
             IntProvider xzRadius,
             float extraEdgeColumnChance
     ) {
-        final JsonObject config = new JsonObject();
-        config.addProperty("replaceable", replaceableBlockTag);
-        config.add("ground_state", DataUtils.encodeBlockStateProvider(groundState));
-        config.addProperty("vegetation_feature", vegetationFeature);
-        config.addProperty("surface", surface.getSerializedName());
-        config.add("depth", DataUtils.encodeIntProvider(depth));
-        config.addProperty("extra_bottom_block_chance", extraBottomBlockChance);
-        config.addProperty("vertical_range", verticalRange);
-        config.addProperty("vegetation_chance", vegetationChance);
-        config.add("xz_radius", DataUtils.encodeIntProvider(xzRadius));
-        config.addProperty("extra_edge_column_chance", extraEdgeColumnChance);
-        finishFeature(name, waterlogged ? "waterlogged_vegetation_patch" : "vegetation_patch", config);
+        finishFeature(name, waterlogged ? "waterlogged_vegetation_patch" : "vegetation_patch", () -> {
+            final JsonObject config = new JsonObject();
+            config.addProperty("replaceable", replaceableBlockTag);
+            config.add("ground_state", DataUtils.Shared.encodeBlockStateProvider(groundState));
+            config.addProperty("vegetation_feature", vegetationFeature);
+            config.addProperty("surface", surface.getSerializedName());
+            config.add("depth", DataUtils.Shared.encodeIntProvider(depth));
+            config.addProperty("extra_bottom_block_chance", extraBottomBlockChance);
+            config.addProperty("vertical_range", verticalRange);
+            config.addProperty("vegetation_chance", vegetationChance);
+            config.add("xz_radius", DataUtils.Shared.encodeIntProvider(xzRadius));
+            config.addProperty("extra_edge_column_chance", extraEdgeColumnChance);
+            return config;
+        });
     }
 
     /**
@@ -1416,49 +1779,240 @@ public class JsonDataEventJS extends EventJS {
             @Nullable Double noiseMultiplier,
             int invalidBlocksThreshold
     ) {
-        final GeodeBlockSettings blockSettings = new GeodeBlockSettings(
-                fillingProvider,
-                innerLayerProvider,
-                altInnerLayerProvider,
-                middleLayerProvider,
-                outerLayerProvider,
-                List.of(innerPlacements),
-                TagKey.create(Registries.BLOCK, cannotReplace),
-                TagKey.create(Registries.BLOCK, invalidBlocks)
-        );
-        final JsonElement blocks = DataUtils.encode(GeodeBlockSettings.CODEC, blockSettings);
-
-        final JsonObject layers = new JsonObject();
-        DataUtils.addProperty(layers, "filling", fillingRange);
-        DataUtils.addProperty(layers, "inner_layer", innerLayerRange);
-        DataUtils.addProperty(layers, "middle_layer", middleLayerRange);
-        DataUtils.addProperty(layers, "outer_layer", outerLayerRange);
-
-        final JsonObject crack = new JsonObject();
-        DataUtils.addProperty(crack, "generate_crack_chance", generateCrackChance);
-        DataUtils.addProperty(crack, "base_crack_size", baseCrackSize);
-        DataUtils.addProperty(crack, "crack_point_offset", crackPointOffset);
-
-        final JsonObject config = new JsonObject();
-        config.add("blocks", blocks);
-        config.add("layers", layers);
-        config.add("crack", crack);
-        DataUtils.addProperty(config, "use_potential_placements_chance", usePotentialPlacementsChance);
-        DataUtils.addProperty(config, "use_alternate_layer0_chance", useAlternateLayer0Chance);
-        DataUtils.addProperty(config, "placements_require_layer0_alternate", placementsRequireLayer0Alternate);
-        config.add("outer_wall_distance", DataUtils.encodeIntProvider(outerWallDistance == null ? UniformInt.of(4, 5) : outerWallDistance));
-        config.add("distribution_points", DataUtils.encodeIntProvider(distributionPoints == null ? UniformInt.of(3, 4) : distributionPoints));
-        config.add("point_offset", DataUtils.encodeIntProvider(pointOffset == null ? UniformInt.of(1, 2) : pointOffset));
-        DataUtils.addProperty(config, "min_gen_offset", minGenOffset);
-        DataUtils.addProperty(config, "max_gen_offset", maxGenOffset);
-        DataUtils.addProperty(config, "noise_multiplier", noiseMultiplier);
-        config.addProperty("invalid_blocks_threshold", invalidBlocksThreshold);
-        finishFeature(name, "geode", config);
+        finishFeature(name, "geode", () -> {
+            final GeodeBlockSettings blockSettings = new GeodeBlockSettings(
+                    fillingProvider,
+                    innerLayerProvider,
+                    altInnerLayerProvider,
+                    middleLayerProvider,
+                    outerLayerProvider,
+                    List.of(innerPlacements),
+                    TagKey.create(Registries.BLOCK, cannotReplace),
+                    TagKey.create(Registries.BLOCK, invalidBlocks)
+            );
+            final JsonElement blocks = DataUtils.encodeShared(GeodeBlockSettings.CODEC, blockSettings);
+
+            final JsonObject layers = new JsonObject();
+            DataUtils.addProperty(layers, "filling", fillingRange);
+            DataUtils.addProperty(layers, "inner_layer", innerLayerRange);
+            DataUtils.addProperty(layers, "middle_layer", middleLayerRange);
+            DataUtils.addProperty(layers, "outer_layer", outerLayerRange);
+
+            final JsonObject crack = new JsonObject();
+            DataUtils.addProperty(crack, "generate_crack_chance", generateCrackChance);
+            DataUtils.addProperty(crack, "base_crack_size", baseCrackSize);
+            DataUtils.addProperty(crack, "crack_point_offset", crackPointOffset);
+
+            final JsonObject config = new JsonObject();
+            config.add("blocks", blocks);
+            config.add("layers", layers);
+            config.add("crack", crack);
+            DataUtils.addProperty(config, "use_potential_placements_chance", usePotentialPlacementsChance);
+            DataUtils.addProperty(config, "use_alternate_layer0_chance", useAlternateLayer0Chance);
+            DataUtils.addProperty(config, "placements_require_layer0_alternate", placementsRequireLayer0Alternate);
+            config.add("outer_wall_distance", DataUtils.Shared.encodeIntProvider(outerWallDistance == null ? UniformInt.of(4, 5) : outerWallDistance));
+            config.add("distribution_points", DataUtils.Shared.encodeIntProvider(distributionPoints == null ? UniformInt.of(3, 4) : distributionPoints));
+            config.add("point_offset", DataUtils.Shared.encodeIntProvider(pointOffset == null ? UniformInt.of(1, 2) : pointOffset));
+            DataUtils.addProperty(config, "min_gen_offset", minGenOffset);
+            DataUtils.addProperty(config, "max_gen_offset", maxGenOffset);
+            DataUtils.addProperty(config, "noise_multiplier", noiseMultiplier);
+            config.addProperty("invalid_blocks_threshold", invalidBlocksThreshold);
+            return config;
+        });
+    }
+
+    /**
+     * Builds the deferred entries, in parallel if there are enough of them, then adds everything in the order it was made
+     *
+     * @return The number of entries added to the data pack
+     */
+    private int flush() {
+        final List<PendingEntry> deferred = new ArrayList<>();
+        for (PendingEntry entry : pending) {
+            if (entry.encoder != null) {
+                deferred.add(entry);
+            }
+        }
+        if (deferred.size() >= PARALLEL_THRESHOLD) {
+            final int chunkSize = Math.max(MIN_CHUNK_SIZE, deferred.size() / (Runtime.getRuntime().availableProcessors() * 4));
+            final List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int start = 0 ; start < deferred.size() ; start += chunkSize) {
+                final List<PendingEntry> chunk = deferred.subList(start, Math.min(start + chunkSize, deferred.size()));
+                futures.add(CompletableFuture.runAsync(DataUtils.withCurrentContext(() -> chunk.forEach(PendingEntry::encode)), Util.backgroundExecutor()));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } else {
+            deferred.forEach(PendingEntry::encode);
+        }
+
+        deduplicate();
+        addBiomeModifiers();
+
+        int emitted = 0;
+        for (PendingEntry entry : pending) {
+            if (entry.json != null) {
+                emit(entry);
+                emitted++;
+            } else if (entry.error != null) {
+                WorldJS.LOGGER.error("Unable to encode worldgen data entry {}", entry.id, entry.error);
+                ScriptType.SERVER.console.error("Unable to encode worldgen data entry " + entry.id + ", skipping it: " + entry.error);
+            }
+        }
+        pending.clear();
+        return emitted;
+    }
+
+    /**
+     * Drops configured features whose json is identical to one made earlier, and points every reference made by the event
+     * at the first instead. Placed features can't be collapsed in the same way, as biomes reference them by name
+     */
+    private void deduplicate() {
+        final Map<String, String> canonical = new HashMap<>();
+        final Map<String, String> duplicates = new HashMap<>();
+        final Iterator<PendingEntry> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            final PendingEntry entry = iterator.next();
+            if (!entry.dedupe || !entry.id.getPath().startsWith(CONFIGURED_PREFIX) || entry.json == null) {
+                continue;
+            }
+            final String name = entry.id.getNamespace() + ":" + entry.id.getPath().substring(CONFIGURED_PREFIX.length());
+            final String first = canonical.putIfAbsent(entry.json, name);
+            if (first != null) {
+                duplicates.put(name, first);
+                iterator.remove();
+            }
+        }
+        if (duplicates.isEmpty()) {
+            return;
+        }
+        for (PendingEntry entry : pending) {
+            if (entry.target != null) {
+                // Placed features made by the event only reference their target
+                if (duplicates.containsKey(entry.target)) {
+                    entry.retarget(duplicates.get(entry.target));
+                }
+            } else if (entry.json != null) {
+                // Anything else, such as placed features added by addons or features nested in a config, is scanned
+                entry.json = retargetAll(entry.json, duplicates);
+            }
+        }
+        WorldJS.LOGGER.info("Collapsed {} duplicate configured features", duplicates.size());
+    }
+
+    /**
+     * Rewrites every {@code "feature"} string of compact json which names one of the given configured features, without parsing it
+     * @return The rewritten json, or the same instance if nothing referenced a replaced feature
+     */
+    private static String retargetAll(String json, Map<String, String> replacements) {
+        StringBuilder rewritten = null;
+        int copied = 0;
+        int index = json.indexOf(FEATURE_KEY);
+        while (index >= 0) {
+            final int start = index + FEATURE_KEY.length();
+            final int end = json.indexOf('"', start);
+            if (end < 0) {
+                break;
+            }
+            final String name = json.substring(start, end);
+            final String replacement = replacements.get(name.indexOf(':') < 0 ? "minecraft:" + name : name);
+            if (replacement != null) {
+                if (rewritten == null) {
+                    rewritten = new StringBuilder(json.length());
+                }
+                rewritten.append(json, copied, start).append(replacement);
+                copied = end;
+            }
+            index = json.indexOf(FEATURE_KEY, end);
+        }
+        if (rewritten == null) {
+            return json;
+        }
+        return rewritten.append(json, copied, json.length()).toString();
+    }
+
+    private void addBiomeModifiers() {
+        int index = 0;
+        for (BiomeModifierGroup group : biomeModifiers.values()) {
+            final JsonObject json = new JsonObject();
+            json.addProperty("type", "forge:add_features");
+            json.add("biomes", group.biomes());
+            final JsonArray features = new JsonArray(group.features().size());
+            group.features().forEach(features::add);
+            json.add("features", features);
+            json.addProperty("step", group.step().getSerializedName());
+            final ResourceLocation id = new ResourceLocation(WorldJS.MODID, "forge/biome_modifier/generated/" + group.step().getSerializedName() + "_" + index++);
+            pending.add(new PendingEntry(id, CompactJson.write(json), null, false, profiler == null ? null : profiler.section("entry", "biome_modifier")));
+        }
+        if (!biomeModifiers.isEmpty()) {
+            WorldJS.LOGGER.info("Generated {} biome modifiers", biomeModifiers.size());
+        }
+        biomeModifiers.clear();
     }
 
     @Override
     protected void afterPosted(EventResult result) {
         super.afterPosted(result);
-        DataUtils.setJde(null);
+        if (profiler != null) {
+            profiler.posted();
+        }
+        final int emitted = flush();
+        if (profiler != null) {
+            profiler.report(encodeCache, emitted);
+        }
+    }
+
+    private record BiomeModifierGroup(JsonElement biomes, GenerationStep.Decoration step, Set<String> features) {}
+
+    private static final class PendingEntry {
+
+        private final ResourceLocation id;
+        @Nullable
+        private final Supplier<JsonElement> encoder;
+        // The entry as compact json, once it has been built
+        @Nullable
+        private String json;
+        @Nullable
+        private Exception error;
+        private final boolean dedupe;
+        @Nullable
+        private final DataProfiler.Section section;
+        // The configured feature referenced by a placed feature made by the event, so only those are rewritten when deduplicating
+        @Nullable
+        private String target;
+
+        private PendingEntry(ResourceLocation id, @Nullable String json, @Nullable Supplier<JsonElement> encoder, boolean dedupe, @Nullable DataProfiler.Section section) {
+            this.id = id;
+            this.json = json;
+            this.encoder = encoder;
+            this.dedupe = dedupe;
+            this.section = section;
+        }
+
+        /**
+         * Points a placed feature made by the event at the configured feature that replaces its target
+         */
+        private void retarget(String replacement) {
+            final JsonElement parsed = json != null ? JsonParser.parseString(json) : null;
+            if (!(parsed instanceof JsonObject object)) {
+                return;
+            }
+            object.addProperty("feature", replacement);
+            target = replacement;
+            json = CompactJson.write(object);
+        }
+
+        private void encode() {
+            assert encoder != null;
+            final long start = System.nanoTime();
+            try {
+                json = CompactJson.write(encoder.get());
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                if (section != null) {
+                    section.encoded(System.nanoTime() - start);
+                }
+            }
+        }
     }
 }
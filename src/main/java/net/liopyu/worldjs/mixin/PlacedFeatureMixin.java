@@ -0,0 +1,28 @@
+package net.liopyu.worldjs.mixin;
+
+import net.liopyu.worldjs.builders.FeatureBuilder;
+import net.liopyu.worldjs.builders.PlacementWalker;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.levelgen.feature.ConfiguredFeature;
+import net.minecraft.world.level.levelgen.placement.PlacedFeature;
+import net.minecraft.world.level.levelgen.placement.PlacementContext;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(PlacedFeature.class)
+public abstract class PlacedFeatureMixin {
+
+    @Inject(method = "placeWithContext", at = @At("HEAD"), cancellable = true)
+    private void worldjs$placeWithContext(PlacementContext context, RandomSource random, BlockPos pos, CallbackInfoReturnable<Boolean> cir) {
+        final PlacedFeature self = (PlacedFeature) (Object) this;
+        final ConfiguredFeature<?, ?> feature = self.feature().value();
+        if (feature.feature() instanceof FeatureBuilder.KubeFeature kubeFeature && kubeFeature.isBatched()) {
+            cir.setReturnValue(kubeFeature.placeBatched(self, context, random, pos));
+        } else if (PlacementWalker.shouldWalk(self)) {
+            cir.setReturnValue(PlacementWalker.walk(self.placement(), context, random, pos, p -> feature.place(context.getLevel(), context.generator(), random, p)));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package net.liopyu.worldjs.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Serializes generated data to the compact json string handed to KubeJS' virtual data pack
+ * <br><br>
+ * The output is identical to {@link JsonElement#toString()}. Each entry is written once, and that string is what gets
+ * deduplicated, cached and added to the pack, so no other copy of it is made. {@link #write(Writable)} lets builders
+ * stream their json without first building the wrapping tree
+ */
+@ApiStatus.Internal
+public class CompactJson {
+
+    public static String write(JsonElement json) {
+        return write(writer -> write(writer, json));
+    }
+
+    public static String write(Writable writable) {
+        final StringWriter out = new StringWriter(256);
+        try (JsonWriter writer = new JsonWriter(out)) {
+            // Same as JsonElement#toString, which allows NaN and infinite numbers
+            writer.setLenient(true);
+            writable.write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public static void write(JsonWriter writer, JsonElement json) throws IOException {
+        if (json == null || json.isJsonNull()) {
+            writer.nullValue();
+        } else if (json instanceof JsonPrimitive primitive) {
+            if (primitive.isNumber()) {
+                writer.value(primitive.getAsNumber());
+            } else if (primitive.isBoolean()) {
+                writer.value(primitive.getAsBoolean());
+            } else {
+                writer.value(primitive.getAsString());
+            }
+        } else if (json instanceof JsonArray array) {
+            writer.beginArray();
+            for (JsonElement element : array) {
+                write(writer, element);
+            }
+            writer.endArray();
+        } else if (json instanceof JsonObject object) {
+            writer.beginObject();
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                writer.name(entry.getKey());
+                write(writer, entry.getValue());
+            }
+            writer.endObject();
+        } else {
+            throw new IllegalArgumentException("Unknown json element type " + json.getClass());
+        }
+    }
+
+    @FunctionalInterface
+    public interface Writable {
+        void write(JsonWriter writer) throws IOException;
+    }
+}
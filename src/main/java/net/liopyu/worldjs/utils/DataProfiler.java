@@ -0,0 +1,177 @@
+package net.liopyu.worldjs.utils;
+
+import dev.latvian.mods.rhino.util.wrap.TypeWrapperFactory;
+import net.liopyu.worldjs.WorldJS;
+import net.liopyu.worldjs.events.JsonDataEventJS;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times one run of {@code WorldJSEvents.worldgenData}, split by feature type, type wrapper and addon method holder.
+ * Addon sections only cover adding the json an addon hands over, not the addon building it
+ * <br><br>
+ * Once the event has been flushed, the slowest sections are logged. The full report is only written to
+ * {@code logs/worldjs/worldgen_data_profile.txt} with {@code -Dworldjs.writeDataProfile=true}, as the event runs on
+ * every reload. Disable profiling entirely with {@code -Dworldjs.disableDataProfiler=true}
+ */
+@ApiStatus.Internal
+public final class DataProfiler {
+
+    public static final boolean ENABLED = !Boolean.getBoolean("worldjs.disableDataProfiler");
+    public static final boolean WRITE_FILE = Boolean.getBoolean("worldjs.writeDataProfile");
+
+    private static final Path FILE = FMLPaths.GAMEDIR.get().resolve("logs").resolve(WorldJS.MODID).resolve("worldgen_data_profile.txt");
+    private static final int LOGGED_SECTIONS = 10;
+
+    private final Map<String, Section> sections = new ConcurrentHashMap<>();
+    private final long start = System.nanoTime();
+    private long postNanos;
+
+    /**
+     * @return The profiler of the active event, or null if there is none or profiling is disabled
+     */
+    @Nullable
+    public static DataProfiler current() {
+        final JsonDataEventJS event = DataUtils.getCurrentJsonDataEventJS();
+        return event == null ? null : event.profiler();
+    }
+
+    /**
+     * Wraps a type wrapper so its conversions are timed while a profiled event is active
+     */
+    public static <T> TypeWrapperFactory<T> timed(String name, TypeWrapperFactory<T> factory) {
+        if (!ENABLED) {
+            return factory;
+        }
+        return (cx, o) -> {
+            final DataProfiler profiler = current();
+            if (profiler == null) {
+                return factory.wrap(cx, o);
+            }
+            final long start = System.nanoTime();
+            try {
+                return factory.wrap(cx, o);
+            } finally {
+                profiler.section("type wrapper", name).call(System.nanoTime() - start);
+            }
+        };
+    }
+
+    public Section section(String kind, String name) {
+        return sections.computeIfAbsent(kind + " " + name, k -> new Section(kind, name));
+    }
+
+    /**
+     * Marks the end of the scripts' handling of the event, everything after is the flush
+     */
+    public void posted() {
+        postNanos = System.nanoTime() - start;
+    }
+
+    public void report(EncodeCache encodeCache, int entries) {
+        final long flushNanos = System.nanoTime() - start - postNanos;
+        final List<Section> sorted = new ArrayList<>();
+        for (Section section : sections.values()) {
+            // Sections of calls nested in another section, such as those made by addons, are never timed
+            if (section.totalNanos() > 0 || section.bytes.sum() > 0) {
+                sorted.add(section);
+            }
+        }
+        sorted.sort(Comparator.comparingLong(Section::totalNanos).reversed());
+        long bytes = 0;
+        for (Section section : sorted) {
+            bytes += section.bytes.sum();
+        }
+
+        final List<String> lines = new ArrayList<>();
+        lines.add(String.format("WorldJS worldgenData: %d entries, %.1fKB of json, scripts %s, flush %s",
+                entries, bytes / 1024.0, PlacementStats.formatNanos(postNanos), PlacementStats.formatNanos(flushNanos)));
+        lines.add(String.format("  DataUtils.encode: %d encoded in %s, %d reused", encodeCache.misses(), PlacementStats.formatNanos(encodeCache.encodeNanos()), encodeCache.hits()));
+        for (Section section : sorted) {
+            lines.add("  " + section.summary());
+        }
+
+        WorldJS.LOGGER.info(lines.get(0));
+        WorldJS.LOGGER.info(lines.get(1));
+        for (int i = 2 ; i < Math.min(lines.size(), LOGGED_SECTIONS + 2) ; i++) {
+            WorldJS.LOGGER.info(lines.get(i));
+        }
+        if (!WRITE_FILE) {
+            return;
+        }
+        try {
+            Files.createDirectories(FILE.getParent());
+            Files.write(FILE, lines, StandardCharsets.UTF_8);
+            WorldJS.LOGGER.info("  Full report written to {}", FMLPaths.GAMEDIR.get().relativize(FILE));
+        } catch (IOException e) {
+            WorldJS.LOGGER.warn("Unable to write the WorldJS worldgen data profile", e);
+        }
+    }
+
+    /**
+     * Time spent on the script thread in calls, time spent building deferred json and the size of the output
+     */
+    public static final class Section {
+
+        public final String kind;
+        public final String name;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder callNanos = new LongAdder();
+        private final LongAdder encodeNanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        private Section(String kind, String name) {
+            this.kind = kind;
+            this.name = name;
+        }
+
+        public void call(long nanos) {
+            calls.increment();
+            callNanos.add(nanos);
+        }
+
+        /**
+         * Adds time to the section without counting another call
+         */
+        public void time(long nanos) {
+            callNanos.add(nanos);
+        }
+
+        public void encoded(long nanos) {
+            encodeNanos.add(nanos);
+        }
+
+        public void wrote(int length) {
+            bytes.add(length);
+        }
+
+        public long totalNanos() {
+            return callNanos.sum() + encodeNanos.sum();
+        }
+
+        public String summary() {
+            final StringBuilder builder = new StringBuilder(String.format("%s (%s): %d calls, total %s, calls %s",
+                    name, kind, calls.sum(), PlacementStats.formatNanos(totalNanos()), PlacementStats.formatNanos(callNanos.sum())));
+            if (encodeNanos.sum() > 0) {
+                builder.append(", deferred ").append(PlacementStats.formatNanos(encodeNanos.sum()));
+            }
+            if (bytes.sum() > 0) {
+                builder.append(String.format(", %.1fKB", bytes.sum() / 1024.0));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.JsonOps;
+import dev.latvian.mods.rhino.util.HideFromJS;
 import net.liopyu.worldjs.WorldJS;
 import net.liopyu.worldjs.api.ICFeatureMethodHolder;
 import net.liopyu.worldjs.api.IPFeatureMethodHolder;
@@ -28,6 +29,7 @@ import net.minecraftforge.common.util.Lazy;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayDeque;
 import java.util.function.Supplier;
 
 public class DataUtils {
@@ -51,16 +53,31 @@ public class DataUtils {
         }
     }
 
+    /**
+     * Encodes the value into a new json tree, which the caller is free to modify
+     */
     public static <T> JsonElement encode(Codec<T> codec, T value) {
         return codec.encodeStart(JsonOps.INSTANCE, value).get().left().get(); // If this is empty you're doing something wrong
     }
 
-    public static JsonArray encodeTargetBlockStateArray(OreConfiguration.TargetBlockState[] blockTargets) {
-        final JsonArray array = new JsonArray(blockTargets.length);
-        for (OreConfiguration.TargetBlockState target : blockTargets) {
-            array.add(encode(OreConfiguration.TargetBlockState.CODEC, target));
+    /**
+     * Encodes the value, reusing the json of equal values encoded earlier in the current {@link JsonDataEventJS}, see {@link EncodeCache}
+     * <br><br>
+     * The returned json may be shared and must not be modified, so this is only for WorldJS' own builders, which add it
+     * to their output as is
+     */
+    @ApiStatus.Internal
+    @HideFromJS
+    public static <T> JsonElement encodeShared(Codec<T> codec, T value) {
+        final JsonDataEventJS event = getCurrentJsonDataEventJS();
+        if (event != null) {
+            return event.encodeCache().encode(codec, value);
         }
-        return array;
+        return encode(codec, value);
+    }
+
+    public static JsonArray encodeTargetBlockStateArray(OreConfiguration.TargetBlockState[] blockTargets) {
+        return encodeArray(OreConfiguration.TargetBlockState.CODEC, blockTargets, false);
     }
 
     public static JsonElement encodeBlockState(BlockState state) {
@@ -92,13 +109,62 @@ public class DataUtils {
     }
 
     public static JsonArray encodeBlockColumnLayerArray(BlockColumnConfiguration.Layer[] layers) {
-        final JsonArray array = new JsonArray(layers.length);
-        for (BlockColumnConfiguration.Layer layer : layers) {
-            array.add(encode(BlockColumnConfiguration.Layer.CODEC, layer));
+        return encodeArray(BlockColumnConfiguration.Layer.CODEC, layers, false);
+    }
+
+    private static <T> JsonArray encodeArray(Codec<T> codec, T[] values, boolean shared) {
+        final JsonArray array = new JsonArray(values.length);
+        for (T value : values) {
+            array.add(shared ? encodeShared(codec, value) : encode(codec, value));
         }
         return array;
     }
 
+    /**
+     * The encode helpers of {@link DataUtils}, going through {@link #encodeShared(Codec, Object)}
+     */
+    @ApiStatus.Internal
+    public static final class Shared {
+
+        private Shared() {}
+
+        public static JsonArray encodeTargetBlockStateArray(OreConfiguration.TargetBlockState[] blockTargets) {
+            return encodeArray(OreConfiguration.TargetBlockState.CODEC, blockTargets, true);
+        }
+
+        public static JsonElement encodeBlockState(BlockState state) {
+            return encodeShared(BlockState.CODEC, state);
+        }
+
+        public static JsonElement encodeIntProvider(IntProvider provider) {
+            return encodeShared(IntProvider.CODEC, provider);
+        }
+
+        public static JsonElement encodeBlockPos(BlockPos pos) {
+            return encodeShared(BlockPos.CODEC, pos);
+        }
+
+        public static JsonElement encodeBlockPredicate(BlockPredicate predicate) {
+            return encodeShared(BlockPredicate.CODEC, predicate);
+        }
+
+        public static JsonElement encodeFloatProvider(FloatProvider provider) {
+            return encodeShared(FloatProvider.CODEC, provider);
+        }
+
+        public static JsonElement encodeBlockStateProvider(BlockStateProvider provider) {
+            return encodeShared(BlockStateProvider.CODEC, provider);
+        }
+
+        public static JsonElement encodeRuleBasedBlockStateProvider(RuleBasedBlockStateProvider provider) {
+            return encodeShared(RuleBasedBlockStateProvider.CODEC, provider);
+        }
+
+        public static JsonArray encodeBlockColumnLayerArray(BlockColumnConfiguration.Layer[] layers) {
+            return encodeArray(BlockColumnConfiguration.Layer.CODEC, layers, true);
+        }
+    }
+
     public static JsonArray encodeStringArray(String[] strings) {
         final JsonArray array = new JsonArray(strings.length);
         for (String str : strings) {
@@ -136,21 +202,72 @@ public class DataUtils {
         if (value != null) json.add(property, value);
     }
 
-    // There should never be multiple of these at any one time, so ThreadLocals shouldn't be necessary
-    @Nullable
-    private static PlacedFeatureBuilder pfb = null;
-    @Nullable
-    private static JsonDataEventJS jde = null;
+    // Per thread so data can be generated on several threads at once, and stacked so builders and events can be nested
+    private static final ThreadLocal<ArrayDeque<PlacedFeatureBuilder>> PLACED_FEATURE_BUILDERS = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<ArrayDeque<JsonDataEventJS>> JSON_DATA_EVENTS = ThreadLocal.withInitial(ArrayDeque::new);
 
+    /**
+     * Makes the builder the current one on this thread until {@link #popPlacedFeatureBuilder(PlacedFeatureBuilder)} is called
+     */
     @ApiStatus.Internal
-    public static void setPfb(@Nullable PlacedFeatureBuilder pfb) { DataUtils.pfb = pfb; }
+    public static void pushPlacedFeatureBuilder(PlacedFeatureBuilder builder) { PLACED_FEATURE_BUILDERS.get().push(builder); }
     @ApiStatus.Internal
-    public static void setJde(@Nullable JsonDataEventJS jde) { DataUtils.jde = jde; }
+    public static void popPlacedFeatureBuilder(PlacedFeatureBuilder builder) { pop(PLACED_FEATURE_BUILDERS.get(), builder); }
+
+    /**
+     * Runs the task with the event as the current one on this thread
+     */
+    @ApiStatus.Internal
+    public static void runWithJsonDataEvent(JsonDataEventJS event, Runnable task) {
+        final ArrayDeque<JsonDataEventJS> events = JSON_DATA_EVENTS.get();
+        events.push(event);
+        try {
+            task.run();
+        } finally {
+            pop(events, event);
+        }
+    }
+
+    /**
+     * Wraps the task so that it runs with the current event and placed feature builder of this thread, on whichever thread runs it
+     */
+    @ApiStatus.Internal
+    public static Runnable withCurrentContext(Runnable task) {
+        final JsonDataEventJS event = getCurrentJsonDataEventJS();
+        final PlacedFeatureBuilder builder = getCurrentPlacedFeatureBuilder();
+        return () -> {
+            if (builder != null) {
+                pushPlacedFeatureBuilder(builder);
+            }
+            try {
+                if (event != null) {
+                    runWithJsonDataEvent(event, task);
+                } else {
+                    task.run();
+                }
+            } finally {
+                if (builder != null) {
+                    popPlacedFeatureBuilder(builder);
+                }
+            }
+        };
+    }
 
     @Nullable
-    public static PlacedFeatureBuilder getCurrentPlacedFeatureBuilder() { return pfb; }
+    public static PlacedFeatureBuilder getCurrentPlacedFeatureBuilder() { return PLACED_FEATURE_BUILDERS.get().peek(); }
     @Nullable
-    public static JsonDataEventJS getCurrentJsonDataEventJS() { return jde; }
+    public static JsonDataEventJS getCurrentJsonDataEventJS() { return JSON_DATA_EVENTS.get().peek(); }
+
+    private static <T> void pop(ArrayDeque<T> stack, T expected) {
+        if (stack.peek() == expected) {
+            stack.pop();
+        } else if (stack.removeFirstOccurrence(expected)) {
+            // Whatever is above wasn't popped, which is a bug, but the context of the caller is at least correct
+            WorldJS.LOGGER.warn("{} was popped while not being the innermost context", expected);
+        } else {
+            WorldJS.LOGGER.warn("Attempted to pop {} while it wasn't an active context", expected);
+        }
+    }
 
     public static final Supplier<ImmutableMap<String, IPFeatureMethodHolder>> modPlacementModifiers = Lazy.of(() -> Util.make(new ImmutableMap.Builder<String, IPFeatureMethodHolder>(), b -> MinecraftForge.EVENT_BUS.post(new AddPFeatureMethodsEvent(b))).build());
     public static final Supplier<ImmutableMap<String, ICFeatureMethodHolder>> modConfiguredFeatures = Lazy.of(() -> Util.make(new ImmutableMap.Builder<String, ICFeatureMethodHolder>(), b -> MinecraftForge.EVENT_BUS.post(new AddCFeatureMethodsEvent(b))).build());
@@ -0,0 +1,63 @@
+package net.liopyu.worldjs.utils;
+
+import com.google.gson.JsonElement;
+import com.mojang.serialization.Codec;
+import net.minecraft.core.BlockPos;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoizes {@link DataUtils#encodeShared(Codec, Object)} for the duration of one {@code WorldJSEvents.worldgenData} event, so
+ * the block states, rule tests, providers etc. which scripts reuse across many features are only encoded once
+ * <br><br>
+ * Values are keyed by the codec's identity and the value's equality, which for most worldgen objects is identity.
+ * The returned json is shared between every feature using the value, so it must never be modified. Safe to use from
+ * several threads at once, as entries are encoded in parallel
+ */
+@ApiStatus.Internal
+public class EncodeCache {
+
+    private final Map<Codec<?>, Map<Object, JsonElement>> cache = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+
+    public <T> JsonElement encode(Codec<T> codec, T value) {
+        // Mutable values could change after being cached
+        if (value == null || value instanceof BlockPos.MutableBlockPos || value instanceof Collection<?> || value instanceof Map<?, ?>) {
+            return DataUtils.encode(codec, value);
+        }
+        final Map<Object, JsonElement> values = cache.computeIfAbsent(codec, c -> new ConcurrentHashMap<>());
+        final JsonElement cached = values.get(value);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        // Not computeIfAbsent, as encoding can be slow and would block other threads using the same bin
+        final long start = System.nanoTime();
+        final JsonElement encoded = DataUtils.encode(codec, value);
+        encodeNanos.add(System.nanoTime() - start);
+        final JsonElement raced = values.putIfAbsent(value, encoded);
+        return raced == null ? encoded : raced;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The total time spent encoding values which weren't cached yet
+     */
+    public long encodeNanos() {
+        return encodeNanos.sum();
+    }
+}
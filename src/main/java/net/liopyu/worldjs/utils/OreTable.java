@@ -0,0 +1,341 @@
+package net.liopyu.worldjs.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import dev.latvian.mods.kubejs.registry.RegistryInfo;
+import dev.latvian.mods.kubejs.script.ScriptType;
+import dev.latvian.mods.kubejs.util.UtilsJS;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.util.valueproviders.ConstantInt;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.levelgen.VerticalAnchor;
+import net.minecraft.world.level.levelgen.feature.configurations.OreConfiguration;
+import net.minecraft.world.level.levelgen.heightproviders.HeightProvider;
+import net.minecraft.world.level.levelgen.heightproviders.TrapezoidHeight;
+import net.minecraft.world.level.levelgen.heightproviders.UniformHeight;
+import net.minecraft.world.level.levelgen.structure.templatesystem.BlockMatchTest;
+import net.minecraft.world.level.levelgen.structure.templatesystem.BlockStateMatchTest;
+import net.minecraft.world.level.levelgen.structure.templatesystem.RuleTest;
+import net.minecraft.world.level.levelgen.structure.templatesystem.TagMatchTest;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads tables of ores, one row per ore, for {@code event.oreTable(...)}
+ * <br><br>
+ * Columns, in any order:
+ * <ul>
+ *     <li>{@code name} - The name of the configured and placed feature</li>
+ *     <li>{@code targets} - {@code target=state} pairs separated by {@code |}, where the target is a {@code #tag}, a block or a block state</li>
+ *     <li>{@code size} - The size of the ore vein</li>
+ *     <li>{@code discard_chance} - The chance to discard blocks exposed to air, optional</li>
+ *     <li>{@code height_type} - Either {@code uniform} or {@code trapezoid}, optional</li>
+ *     <li>{@code min_y}, {@code max_y} - Either a y level, {@code bottom+n} or {@code top-n}</li>
+ *     <li>{@code count} - The number of veins per chunk, optional</li>
+ *     <li>{@code rarity} - Only place in one of this many chunks, optional</li>
+ *     <li>{@code scattered} - If the ore should be a {@code minecraft:scattered_ore}, optional</li>
+ * </ul>
+ * Equal targets and heights are only parsed once, so their encoded json can be shared between rows
+ */
+@ApiStatus.Internal
+public class OreTable {
+
+    public record Entry(String name, OreConfiguration.TargetBlockState[] targets, int size, float discardChance, boolean scattered,
+                        HeightProvider height, @Nullable Integer count, @Nullable Integer rarity) implements Placement {
+
+        /**
+         * Places the ore in the same way as vanilla's ores
+         */
+        @Override
+        public void accept(PlacedFeatureBuilder builder) {
+            if (rarity != null) {
+                builder.rarityFilter(rarity);
+            }
+            if (count != null) {
+                builder.count(ConstantInt.of(count));
+            }
+            builder.inSquare();
+            builder.heightRange(height);
+            builder.biomeFilter();
+        }
+    }
+
+    /**
+     * Reads the rows of a {@code .csv} file with a header row, or a {@code .json} file containing an array of objects
+     */
+    public static List<Map<String, Object>> readRows(Path path) throws IOException {
+        if (path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                final List<Map<String, Object>> rows = new ArrayList<>();
+                for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+                    final Map<String, Object> row = new LinkedHashMap<>();
+                    for (Map.Entry<String, JsonElement> column : element.getAsJsonObject().entrySet()) {
+                        row.put(column.getKey(), fromJson(column.getValue()));
+                    }
+                    rows.add(row);
+                }
+                return rows;
+            }
+        }
+        return readCsv(Files.readAllLines(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the rows, reporting and skipping any which are invalid
+     *
+     * @param source Where the rows came from, used in error messages
+     */
+    public static List<Entry> parse(List<? extends Map<?, ?>> rows, String source) {
+        final List<Entry> entries = new ArrayList<>(rows.size());
+        final Map<String, OreConfiguration.TargetBlockState[]> targets = new HashMap<>();
+        final Map<String, HeightProvider> heights = new HashMap<>();
+        for (int i = 0 ; i < rows.size() ; i++) {
+            final Map<?, ?> row = rows.get(i);
+            try {
+                final String name = string(row, true, "name");
+                final String targetList = string(row, true, "targets", "target");
+                final String heightType = string(row, false, "height_type", "heightType");
+                final String minY = string(row, true, "min_y", "minY");
+                final String maxY = string(row, true, "max_y", "maxY");
+                final String heightKey = heightType + "|" + minY + "|" + maxY;
+                HeightProvider height = heights.get(heightKey);
+                if (height == null) {
+                    height = height(heightType, anchor(minY), anchor(maxY));
+                    heights.put(heightKey, height);
+                }
+                final Object discardChance = GeneralUtils.getFirstOfKeys(row, "discard_chance", "discardChance");
+                final Object scattered = GeneralUtils.getFirstOfKeys(row, "scattered");
+                entries.add(new Entry(
+                        name,
+                        targets.computeIfAbsent(targetList, OreTable::targets),
+                        integer(row, "size"),
+                        isEmpty(discardChance) ? 0 : Float.parseFloat(String.valueOf(discardChance).trim()),
+                        !isEmpty(scattered) && (Boolean.TRUE.equals(scattered) || "true".equalsIgnoreCase(String.valueOf(scattered).trim())),
+                        height,
+                        optionalInteger(row, "count"),
+                        optionalInteger(row, "rarity", "rarity_chance", "rarityChance")
+                ));
+            } catch (RuntimeException e) {
+                ScriptType.SERVER.console.error("Skipping row " + (i + 1) + " of ore table " + source + ": " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private static OreConfiguration.TargetBlockState[] targets(String str) {
+        final List<OreConfiguration.TargetBlockState> targets = new ArrayList<>();
+        for (String pair : str.split("\\|")) {
+            final String trimmed = pair.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            final int split = topLevelEquals(trimmed);
+            if (split == -1) {
+                throw new IllegalArgumentException("Target '" + trimmed + "' should be in the form target=state");
+            }
+            targets.add(OreConfiguration.target(ruleTest(trimmed.substring(0, split).trim()), blockState(trimmed.substring(split + 1).trim())));
+        }
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No targets given");
+        }
+        return targets.toArray(new OreConfiguration.TargetBlockState[0]);
+    }
+
+    // Block states may contain '=' within their properties
+    private static int topLevelEquals(String str) {
+        int depth = 0;
+        for (int i = 0 ; i < str.length() ; i++) {
+            final char c = str.charAt(i);
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            } else if (c == '=' && depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static RuleTest ruleTest(String str) {
+        if (str.startsWith("#")) {
+            return new TagMatchTest(TagKey.create(Registries.BLOCK, new ResourceLocation(str.substring(1))));
+        } else if (str.contains("[")) {
+            return new BlockStateMatchTest(blockState(str));
+        }
+        return new BlockMatchTest(block(str));
+    }
+
+    private static BlockState blockState(String str) {
+        final int bracket = str.indexOf('[');
+        if (bracket < 0) {
+            return block(str).defaultBlockState();
+        }
+        // parseBlockState turns unknown ids into air, so the id is checked on its own first
+        block(str.substring(0, bracket).trim());
+        return UtilsJS.parseBlockState(str);
+    }
+
+    private static Block block(String str) {
+        final ResourceLocation id = new ResourceLocation(str);
+        final Block block = RegistryInfo.BLOCK.getValue(id);
+        if (block == null || (block == Blocks.AIR && !id.equals(new ResourceLocation("air")))) {
+            throw new IllegalArgumentException("Unknown block '" + str + "'");
+        }
+        return block;
+    }
+
+    private static HeightProvider height(@Nullable String type, VerticalAnchor min, VerticalAnchor max) {
+        if (type == null || type.equalsIgnoreCase("uniform")) {
+            return UniformHeight.of(min, max);
+        } else if (type.equalsIgnoreCase("trapezoid")) {
+            return TrapezoidHeight.of(min, max);
+        }
+        throw new IllegalArgumentException("Unknown height type '" + type + "', expected uniform or trapezoid");
+    }
+
+    private static VerticalAnchor anchor(String str) {
+        final String anchor = str.replace(" ", "").toLowerCase(Locale.ROOT);
+        if (anchor.startsWith("bottom")) {
+            return VerticalAnchor.aboveBottom(anchor.length() == 6 ? 0 : Integer.parseInt(anchor.substring(6)));
+        } else if (anchor.startsWith("top")) {
+            return VerticalAnchor.belowTop(anchor.length() == 3 ? 0 : -Integer.parseInt(anchor.substring(3)));
+        }
+        return VerticalAnchor.absolute((int) Double.parseDouble(anchor));
+    }
+
+    @Nullable
+    private static String string(Map<?, ?> row, boolean required, String... keys) {
+        final Object value = GeneralUtils.getFirstOfKeys(row, (Object[]) keys);
+        if (isEmpty(value)) {
+            if (required) {
+                throw new IllegalArgumentException("Missing column '" + keys[0] + "'");
+            }
+            return null;
+        } else if (value instanceof List<?> list) {
+            // Json and script rows may list their targets
+            final StringBuilder builder = new StringBuilder();
+            for (Object o : list) {
+                if (!builder.isEmpty()) {
+                    builder.append('|');
+                }
+                builder.append(o);
+            }
+            return builder.toString();
+        } else if (value instanceof Number number) {
+            return number.doubleValue() == number.intValue() ? String.valueOf(number.intValue()) : String.valueOf(number);
+        }
+        return String.valueOf(value).trim();
+    }
+
+    private static int integer(Map<?, ?> row, String... keys) {
+        final Integer value = optionalInteger(row, keys);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing column '" + keys[0] + "'");
+        }
+        return value;
+    }
+
+    @Nullable
+    private static Integer optionalInteger(Map<?, ?> row, String... keys) {
+        final Object value = GeneralUtils.getFirstOfKeys(row, (Object[]) keys);
+        if (isEmpty(value)) {
+            return null;
+        } else if (value instanceof Number number) {
+            return number.intValue();
+        }
+        return (int) Double.parseDouble(String.valueOf(value).trim());
+    }
+
+    private static boolean isEmpty(@Nullable Object value) {
+        return value == null || (value instanceof CharSequence str && str.toString().isBlank());
+    }
+
+    @Nullable
+    private static Object fromJson(JsonElement json) {
+        if (json instanceof JsonPrimitive primitive) {
+            return primitive.isNumber() ? primitive.getAsNumber() : primitive.isBoolean() ? primitive.getAsBoolean() : primitive.getAsString();
+        } else if (json instanceof JsonArray array) {
+            final List<Object> list = new ArrayList<>(array.size());
+            for (JsonElement element : array) {
+                list.add(fromJson(element));
+            }
+            return list;
+        } else if (json instanceof JsonObject object) {
+            // A single target written as an object
+            return object.get("target").getAsString() + "=" + object.get("state").getAsString();
+        }
+        return null;
+    }
+
+    private static List<Map<String, Object>> readCsv(List<String> lines) {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        List<String> header = null;
+        for (String line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            final List<String> cells = splitCsvLine(line);
+            if (header == null) {
+                header = new ArrayList<>(cells.size());
+                for (String cell : cells) {
+                    header.add(cell.trim().toLowerCase(Locale.ROOT));
+                }
+                continue;
+            }
+            final Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0 ; i < Math.min(header.size(), cells.size()) ; i++) {
+                row.put(header.get(i), cells.get(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<String> splitCsvLine(String line) {
+        final List<String> cells = new ArrayList<>();
+        final StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0 ; i < line.length() ; i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+}
@@ -2,12 +2,15 @@ package net.liopyu.worldjs.utils;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import dev.latvian.mods.kubejs.script.ScriptType;
 import dev.latvian.mods.kubejs.typings.Generics;
 import dev.latvian.mods.kubejs.typings.Info;
 import dev.latvian.mods.kubejs.typings.Param;
 import dev.latvian.mods.rhino.util.HideFromJS;
 import net.liopyu.worldjs.api.IPFeatureMethodHolder;
+import net.liopyu.worldjs.events.JsonDataEventJS;
 import net.minecraft.core.Direction;
 import net.minecraft.util.valueproviders.IntProvider;
 import net.minecraft.world.level.levelgen.GenerationStep;
@@ -22,13 +25,46 @@ import org.jetbrains.annotations.Nullable;
 public class PlacedFeatureBuilder {
 
     public transient final String feature;
-    public transient final JsonArray placements;
+    private transient JsonArray placements;
+    // If the placements are a template's, which must be copied before being added to
+    private transient boolean shared = false;
 
     public PlacedFeatureBuilder(String name) {
         final String[] loc = DataUtils.normalizeName(name);
         feature = loc[0] + ":" + loc[1];
         placements = new JsonArray();
-        DataUtils.setPfb(this);
+    }
+
+    /**
+     * @return The placement modifiers, which may be shared with other builders and must not be modified
+     */
+    @HideFromJS
+    public JsonArray getPlacements() {
+        return placements;
+    }
+
+    private void append(JsonElement modifier) {
+        if (shared) {
+            final JsonArray copy = new JsonArray(placements.size() + 1);
+            copy.addAll(placements);
+            placements = copy;
+            shared = false;
+        }
+        placements.add(modifier);
+    }
+
+    /**
+     * Runs the placement with this as the current builder, so addon {@link IPFeatureMethodHolder IPFeatureMethodHolders} add to it
+     */
+    @HideFromJS
+    public PlacedFeatureBuilder apply(Placement placement) {
+        DataUtils.pushPlacedFeatureBuilder(this);
+        try {
+            placement.accept(this);
+        } finally {
+            DataUtils.popPlacedFeatureBuilder(this);
+        }
+        return this;
     }
 
     @Generics(String.class)
@@ -36,14 +72,35 @@ public class PlacedFeatureBuilder {
         return DataUtils.modPlacementModifiers.get();
     }
 
+    @Info(value = "Adds the placement modifiers of a template made with `event.definePlacementTemplate` to the placed feature", params = {
+            @Param(name = "name", value = "The name of the template")
+    })
+    public void template(String name) {
+        final JsonDataEventJS event = DataUtils.getCurrentJsonDataEventJS();
+        final JsonArray template = event == null ? null : event.getPlacementTemplate(name);
+        if (template == null) {
+            ScriptType.SERVER.console.error("Unknown placement template '" + name + "' used by placed feature " + feature);
+            return;
+        }
+        if (placements.isEmpty()) {
+            // Shared until something is added after it
+            placements = template;
+            shared = true;
+        } else {
+            for (JsonElement modifier : template) {
+                append(modifier);
+            }
+        }
+    }
+
     @Info(value = "Adds the given json object to the placed feature's list of placement modifiers")
     public void addJsonPlacement(JsonObject json) {
-        placements.add(json);
+        append(json);
     }
 
     @Info(value = "Adds a placement modifier of the given type to the placed feature's list of placement modifiers")
     public void addSimplePlacement(String type) {
-        placements.add(initModifier(type));
+        append(initModifier(type));
     }
 
     @Info(value = "Adds a `minecraft:count` placement modifier to the placed feature", params = {
@@ -51,8 +108,8 @@ public class PlacedFeatureBuilder {
     })
     public void count(IntProvider intProvider) {
         final JsonObject json = initModifier("count");
-        json.add("count", DataUtils.encodeIntProvider(intProvider));
-        placements.add(json);
+        json.add("count", DataUtils.Shared.encodeIntProvider(intProvider));
+        append(json);
     }
 
     @Info(value = "Adds a `minecraft:biome` placement modifier to the placed feature")
@@ -65,8 +122,8 @@ public class PlacedFeatureBuilder {
     })
     public void blockPredicateFilter(BlockPredicate blockPredicate) {
         final JsonObject json = initModifier("block_predicate_filter");
-        json.add("predicate", DataUtils.encode(BlockPredicate.CODEC, blockPredicate));
-        placements.add(json);
+        json.add("predicate", DataUtils.encodeShared(BlockPredicate.CODEC, blockPredicate));
+        append(json);
     }
 
     @Info(value = "Adds a `minecraft:carving_mask` placement modifier to the placed feature", params = {
@@ -75,7 +132,7 @@ public class PlacedFeatureBuilder {
     public void carvingMask(GenerationStep.Carving carvingStep) {
         final JsonObject json = initModifier("carving_mask");
         json.addProperty("step", carvingStep.getSerializedName());
-        placements.add(json);
+        append(json);
     }
 
     @Info(value = "Adds a `minecraft:count_on_every_layer` modifier to the placed feature", params = {
@@ -83,8 +140,8 @@ public class PlacedFeatureBuilder {
     })
     public void countOnEveryLayer(IntProvider intProvider) {
         final JsonObject json = initModifier("count_on_every_layer");
-        json.add("count", DataUtils.encodeIntProvider(intProvider));
-        placements.add(json);
+        json.add("count", DataUtils.Shared.encodeIntProvider(intProvider));
+        append(json);
     }
 
     @Info(value = "Adds a new `minecraft:environment_scan` placement modifier to the placed feature", params = {
@@ -96,12 +153,12 @@ public class PlacedFeatureBuilder {
     public void environmentScan(Direction direction, BlockPredicate targetCondition, int maxSteps, @Nullable BlockPredicate allowedSearchCondition) {
         final JsonObject json = initModifier("environment_scan");
         json.addProperty("direction_of_search", direction.getSerializedName());
-        json.add("target_condition", DataUtils.encode(BlockPredicate.CODEC, targetCondition));
+        json.add("target_condition", DataUtils.encodeShared(BlockPredicate.CODEC, targetCondition));
         json.addProperty("max_steps", maxSteps);
         if (allowedSearchCondition != null) {
-            json.add("allowed_search_condition", DataUtils.encode(BlockPredicate.CODEC, allowedSearchCondition));
+            json.add("allowed_search_condition", DataUtils.encodeShared(BlockPredicate.CODEC, allowedSearchCondition));
         }
-        placements.add(json);
+        append(json);
     }
 
     @Info(value = "Adds a `minecraft:height_range` placement modifier to the placed feature", params = {
@@ -109,8 +166,8 @@ public class PlacedFeatureBuilder {
     })
     public void heightRange(HeightProvider heightProvider) {
         final JsonObject json = initModifier("height_range");
-        json.add("height", DataUtils.encode(HeightProvider.CODEC, heightProvider));
-        placements.add(json);
+        json.add("height", DataUtils.encodeShared(HeightProvider.CODEC, heightProvider));
+        append(json);
     }
 
     @Info(value = "Adds a `minecraft:heightmap` placement modifier to the placed feature", params = {
@@ -119,7 +176,7 @@ public class PlacedFeatureBuilder {
     public void heightmap(Heightmap.Types heightmapType) {
         final JsonObject json = initModifier("heightmap");
         json.addProperty("heightmap", heightmapType.getSerializedName());
-        placements.add(json);
+        append(json);
     }
     
     @Info(value = "Adds a `minecraft:in_square` placement modifier to the placed feature")
@@ -133,7 +190,7 @@ public class PlacedFeatureBuilder {
         json.addProperty("noise_to_count_ratio", noiseToCountRatio);
         json.addProperty("noise_factor", noiseFactor);
         json.addProperty("noise_offset", noiseOffset);
-        placements.add(json);
+        append(json);
     }
     
     // TODO: Explain these args
@@ -142,7 +199,7 @@ public class PlacedFeatureBuilder {
         json.addProperty("noise_level", noiseLevel);
         json.addProperty("below_noise", belowNoise);
         json.addProperty("above_noise", aboveNoise);
-        placements.add(json);
+        append(json);
     }
 
     @Info(value = "Adds a `minecraft:random_offset` placement modifier to the placed feature", params = {
@@ -151,9 +208,9 @@ public class PlacedFeatureBuilder {
     })
     public void randomOffset(IntProvider xzSpread, IntProvider ySpread) {
         final JsonObject json = initModifier("random_offset");
-        json.add("xz_spread", DataUtils.encode(IntProvider.CODEC, xzSpread));
-        json.add("y_spread", DataUtils.encode(IntProvider.CODEC, ySpread));
-        placements.add(json);
+        json.add("xz_spread", DataUtils.encodeShared(IntProvider.CODEC, xzSpread));
+        json.add("y_spread", DataUtils.encodeShared(IntProvider.CODEC, ySpread));
+        append(json);
     }
 
     @Info(value = "Adds a `minecraft:rarity_filter` placement modifier to the placed feature", params = {
@@ -162,7 +219,7 @@ public class PlacedFeatureBuilder {
     public void rarityFilter(int chance) {
         final JsonObject json = initModifier("rarity_filter");
         json.addProperty("chance", chance);
-        placements.add(json);
+        append(json);
     }
 
     @Info(value = "Adds a `minecraft:surface_relative_threshold_filter` placement modifier to the placed feature", params = {
@@ -179,7 +236,7 @@ public class PlacedFeatureBuilder {
         if (maxOffset != null) {
             json.addProperty("max_inclusive", maxOffset);
         }
-        placements.add(json);
+        append(json);
     }
 
     @Info(value = "Adds a `minecraft:surface_water_depth_filter` placement modifier to the placed feature", params = {
@@ -188,7 +245,7 @@ public class PlacedFeatureBuilder {
     public void surfaceWaterDepthFilter(int maxDepth) {
         final JsonObject json = initModifier("surface_water_depth_filter");
         json.addProperty("max_water_depth", maxDepth);
-        placements.add(json);
+        append(json);
     }
 
     private JsonObject initModifier(String type) {
@@ -199,10 +256,23 @@ public class PlacedFeatureBuilder {
 
     @HideFromJS
     public JsonObject toJson() {
-        DataUtils.setPfb(null);
         final JsonObject json = new JsonObject();
         json.addProperty("feature", feature);
-        json.add("placement", placements);
+        json.add("placement", placements.deepCopy()); // May hold shared json, see DataUtils#encodeShared
         return json;
     }
+
+    /**
+     * Writes the placed feature as compact json, without building the wrapping json object
+     */
+    @HideFromJS
+    public String toCompactJson() {
+        return CompactJson.write(writer -> {
+            writer.beginObject();
+            writer.name("feature").value(feature);
+            writer.name("placement");
+            CompactJson.write(writer, placements);
+            writer.endObject();
+        });
+    }
 }
@@ -0,0 +1,237 @@
+package net.liopyu.worldjs.utils;
+
+import net.liopyu.worldjs.WorldJS;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free invocation counters and latency histograms for scripted features and placement modifiers
+ * <br><br>
+ * Latencies are kept in a log-linear histogram with four buckets per power of two, so reported percentiles are the
+ * upper bound of the bucket they fall in and are at most 25% higher than the real value
+ */
+@ApiStatus.Internal
+public final class PlacementStats {
+
+    private static final Map<String, PlacementStats> STATS = new ConcurrentHashMap<>();
+    private static final int BUCKETS = 256;
+    private static final ThreadLocal<Timer> TIMERS = ThreadLocal.withInitial(Timer::new);
+
+    public static PlacementStats feature(ResourceLocation id) {
+        return STATS.computeIfAbsent("feature " + id, k -> new PlacementStats(id, "feature"));
+    }
+
+    public static PlacementStats modifier(ResourceLocation id) {
+        return STATS.computeIfAbsent("modifier " + id, k -> new PlacementStats(id, "placement modifier"));
+    }
+
+    /**
+     * @return Every tracked feature and modifier which has been invoked at least once, slowest in total first
+     */
+    public static List<PlacementStats> snapshot() {
+        final List<PlacementStats> list = new ArrayList<>();
+        for (PlacementStats stats : STATS.values()) {
+            if (stats.invocations.sum() > 0) {
+                list.add(stats);
+            }
+        }
+        list.sort(Comparator.comparingLong((PlacementStats s) -> s.totalNanos.sum()).reversed());
+        return list;
+    }
+
+    /**
+     * Starts timing an invocation on this thread, to be ended by exactly one {@link Timer#stop()}
+     */
+    public static Timer startTimer() {
+        final Timer timer = TIMERS.get();
+        timer.start();
+        return timer;
+    }
+
+    public static void resetAll() {
+        STATS.values().forEach(PlacementStats::reset);
+    }
+
+    public static void logAll() {
+        final List<PlacementStats> stats = snapshot();
+        if (stats.isEmpty()) {
+            return;
+        }
+        WorldJS.LOGGER.info("WorldJS placement statistics:");
+        for (PlacementStats s : stats) {
+            WorldJS.LOGGER.info("  {}", s.summary());
+        }
+    }
+
+    public final ResourceLocation id;
+    public final String kind;
+
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder positions = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    private PlacementStats(ResourceLocation id, String kind) {
+        this.id = id;
+        this.kind = kind;
+    }
+
+    /**
+     * Records a completed invocation
+     * @param nanos The time the invocation took
+     * @param success If the feature placed or the modifier emitted any position
+     * @param emitted The number of positions emitted, 0 for features
+     */
+    public void record(long nanos, boolean success, int emitted) {
+        invocations.increment();
+        if (success) {
+            successes.increment();
+        }
+        if (emitted > 0) {
+            positions.add(emitted);
+        }
+        time(nanos);
+    }
+
+    /**
+     * Records an invocation which threw
+     */
+    public void recordError(long nanos) {
+        invocations.increment();
+        errors.increment();
+        time(nanos);
+    }
+
+    private void time(long nanos) {
+        totalNanos.add(nanos);
+        histogram.incrementAndGet(bucket(nanos));
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public void reset() {
+        invocations.reset();
+        successes.reset();
+        errors.reset();
+        positions.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+        for (int i = 0 ; i < BUCKETS ; i++) {
+            histogram.set(i, 0);
+        }
+    }
+
+    /**
+     * @param percentile In the range [0, 1]
+     * @return The approximate latency in nanoseconds under which the given fraction of invocations completed
+     */
+    public long percentile(double percentile) {
+        final long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0 ; i < BUCKETS ; i++) {
+            counts[i] = histogram.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(total * percentile));
+        long seen = 0;
+        for (int i = 0 ; i < BUCKETS ; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public String summary() {
+        final long calls = invocations.sum();
+        final double successRate = calls == 0 ? 0 : 100.0 * successes.sum() / calls;
+        return String.format("%s (%s): %d calls, %.1f%% success, %d errors, p50 %s, p99 %s, max %s, total %s, %d positions",
+                id, kind, calls, successRate, errors.sum(),
+                formatNanos(percentile(0.5)), formatNanos(percentile(0.99)), formatNanos(maxNanos.get()),
+                formatNanos(totalNanos.sum()), positions.sum()
+        );
+    }
+
+    // Values below 4 get their own bucket, everything above is split into 4 buckets per power of two
+    private static int bucket(long nanos) {
+        if (nanos < 4) {
+            return (int) Math.max(nanos, 0);
+        }
+        final int log = 63 - Long.numberOfLeadingZeros(nanos);
+        return (log - 1) * 4 + (int) ((nanos >>> (log - 2)) & 3);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        final int log = bucket / 4 + 1;
+        final long width = 1L << (log - 2);
+        return (4 + bucket % 4) * width + width - 1;
+    }
+
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        } else if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1_000.0);
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1_000_000.0);
+        }
+        return String.format("%.2fs", nanos / 1_000_000_000.0);
+    }
+
+    /**
+     * The invocations being timed on one thread, innermost last
+     * <br><br>
+     * A scripted feature or modifier may place or select through another one while it runs, and the time of such a
+     * nested invocation is subtracted from the outer one, so each is only recorded as the time spent in itself
+     */
+    public static final class Timer {
+
+        private long[] starts = new long[8];
+        private long[] nested = new long[8];
+        private int depth;
+
+        private Timer() {}
+
+        private void start() {
+            if (depth == starts.length) {
+                starts = Arrays.copyOf(starts, depth * 2);
+                nested = Arrays.copyOf(nested, depth * 2);
+            }
+            nested[depth] = 0;
+            starts[depth++] = System.nanoTime();
+        }
+
+        /**
+         * @return The time since the matching {@link #startTimer()}, minus that of the invocations nested in it
+         */
+        public long stop() {
+            final long total = System.nanoTime() - starts[--depth];
+            if (depth > 0) {
+                nested[depth - 1] += total;
+            }
+            return total - nested[depth];
+        }
+    }
+}
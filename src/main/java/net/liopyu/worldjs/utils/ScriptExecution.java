@@ -0,0 +1,242 @@
+package net.liopyu.worldjs.utils;
+
+import dev.latvian.mods.kubejs.KubeJS;
+import dev.latvian.mods.kubejs.script.ScriptManager;
+import dev.latvian.mods.kubejs.script.ScriptType;
+import dev.latvian.mods.kubejs.util.KubeJSPlugins;
+import dev.latvian.mods.rhino.ClassShutter;
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.Function;
+import dev.latvian.mods.rhino.Scriptable;
+import dev.latvian.mods.rhino.ScriptableObject;
+import dev.latvian.mods.rhino.Undefined;
+import dev.latvian.mods.rhino.mod.util.RemappingHelper;
+import dev.latvian.mods.rhino.util.HideFromJS;
+import dev.latvian.mods.rhino.util.wrap.TypeWrappers;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The concurrency model for script callbacks invoked during world generation
+ * <br><br>
+ * Chunk generation places features and runs placement modifiers on several worker threads at once. The interface
+ * adapters Rhino makes for script functions are bound to the single {@code Context} of the script manager that loaded
+ * them, which keeps interpreter state that must not be shared between threads. Worldgen callbacks are therefore kept as
+ * plain script functions and called through a context owned by the calling thread, configured the same way as the
+ * script manager's own (class filter, remapper, type wrappers). Calls on different threads never wait on each other
+ * <br><br>
+ * The scope of the scripts is shared rather than copied, as functions resolve variables through the scope they were
+ * declared in. Callbacks may read anything the scripts defined, but must not assign to top level variables or mutate
+ * shared objects, since other threads may be running the same callback at the same time
+ * <br><br>
+ * Contexts are made lazily on first use and remade after the scripts they were configured for are reloaded. A thread
+ * reuses its context for nested calls, so a script which places another scripted feature from inside its own callback is fine
+ * <br><br>
+ * Callbacks have fixed arities so that calling one does not allocate: each thread keeps an argument array per nesting
+ * depth, and objects passed on every call, like placement contexts, implement {@link Reused} to be wrapped for the
+ * script only once per context
+ */
+@ApiStatus.Internal
+public final class ScriptExecution {
+
+    private static final ScriptManager[] MANAGERS = new ScriptManager[ScriptType.values().length];
+    private static final ThreadLocal<ThreadContexts> CONTEXTS = ThreadLocal.withInitial(ThreadContexts::new);
+    private static volatile int generation;
+
+    private ScriptExecution() {}
+
+    /**
+     * Called whenever the scripts of a type are (re)loaded, so threads configure their next context from the new manager
+     */
+    public static synchronized void loaded(ScriptType type, ScriptManager manager) {
+        MANAGERS[type.ordinal()] = manager;
+        generation++;
+    }
+
+    /**
+     * Binds a script function so it can be called from any thread
+     * @param type The type of the scripts which made the function
+     */
+    public static Callback bind(ScriptType type, Function function) {
+        return new Callback(type, function, ScriptableObject.getTopLevelScope(function));
+    }
+
+    /**
+     * @return The calling thread's context for scripts of the given type
+     */
+    public static Context context(ScriptType type) {
+        return CONTEXTS.get().get(type);
+    }
+
+    private static Context createContext(ScriptType type) {
+        final ScriptManager manager = MANAGERS[type.ordinal()];
+        if (manager == null) {
+            throw new IllegalStateException("WorldJS script callback called before " + type.name + " scripts were loaded");
+        }
+        // Mirrors the setup of ScriptManager#load, which KubeJS does not expose for reuse
+        final Context cx = Context.enterWithNewFactory();
+        cx.setClassShutter((fullClassName, shutterType) -> shutterType != ClassShutter.TYPE_CLASS_IN_PACKAGE || manager.isClassAllowed(fullClassName));
+        cx.setRemapper(RemappingHelper.getMinecraftRemapper());
+        cx.setApplicationClassLoader(KubeJS.class.getClassLoader());
+        cx.setProperty("Type", type);
+        final TypeWrappers typeWrappers = cx.getTypeWrappers();
+        KubeJSPlugins.forEachPlugin(plugin -> plugin.registerTypeWrappers(type, typeWrappers));
+        return cx;
+    }
+
+    private static final class ThreadContexts {
+
+        private static final int MAX_ARITY = 5;
+
+        private final Context[] contexts = new Context[ScriptType.values().length];
+        private int generation = -1;
+        // Argument arrays by nesting depth and arity, as a nested call must not overwrite the arguments of its caller
+        private Object[][][] args = new Object[4][][];
+        private int depth;
+
+        private Context get(ScriptType type) {
+            if (generation != ScriptExecution.generation) {
+                Arrays.fill(contexts, null);
+                generation = ScriptExecution.generation;
+            }
+            Context cx = contexts[type.ordinal()];
+            if (cx == null) {
+                cx = createContext(type);
+                contexts[type.ordinal()] = cx;
+            }
+            return cx;
+        }
+
+        private Object[] pushArgs(int arity) {
+            if (depth == args.length) {
+                args = Arrays.copyOf(args, depth * 2);
+            }
+            Object[][] frame = args[depth];
+            if (frame == null) {
+                frame = new Object[MAX_ARITY + 1][];
+                args[depth] = frame;
+            }
+            Object[] array = frame[arity];
+            if (array == null) {
+                array = new Object[arity];
+                frame[arity] = array;
+            }
+            depth++;
+            return array;
+        }
+
+        private void popArgs(Object[] array) {
+            // Not kept alive by the array until its next use
+            Arrays.fill(array, null);
+            depth--;
+        }
+    }
+
+    /**
+     * An object which is passed to scripts over and over on one thread, such as a placement context. It is wrapped for
+     * the script once per context and scope instead of on every call
+     * <br><br>
+     * Only for objects confined to one thread, as the cache is not synchronized
+     */
+    public interface Reused {
+
+        @HideFromJS
+        WrapperCache wrapperCache();
+    }
+
+    /**
+     * The script wrapper of a {@link Reused} object
+     */
+    public static final class WrapperCache {
+
+        @Nullable
+        private Context cx;
+        @Nullable
+        private Scriptable scope;
+        @Nullable
+        private Object wrapped;
+
+        private Object wrap(Context cx, Scriptable scope, Object value) {
+            if (this.cx != cx || this.scope != scope) {
+                wrapped = cx.getWrapFactory().wrap(cx, scope, value, null);
+                this.cx = cx;
+                this.scope = scope;
+            }
+            return wrapped;
+        }
+    }
+
+    /**
+     * A script function which is called through the calling thread's own context
+     */
+    public static final class Callback {
+
+        private final ScriptType type;
+        private final Function function;
+        private final Scriptable scope;
+
+        private Callback(ScriptType type, Function function, Scriptable scope) {
+            this.type = type;
+            this.function = function;
+            this.scope = scope;
+        }
+
+        public void call(Object arg0, Object arg1, Object arg2, Object arg3, Object arg4) {
+            final ThreadContexts thread = CONTEXTS.get();
+            final Context cx = thread.get(type);
+            final Object[] args = thread.pushArgs(5);
+            args[0] = wrap(cx, arg0);
+            args[1] = wrap(cx, arg1);
+            args[2] = wrap(cx, arg2);
+            args[3] = wrap(cx, arg3);
+            args[4] = wrap(cx, arg4);
+            invoke(thread, cx, args);
+        }
+
+        public boolean callBoolean(Object arg0) {
+            final ThreadContexts thread = CONTEXTS.get();
+            final Context cx = thread.get(type);
+            final Object[] args = thread.pushArgs(1);
+            args[0] = wrap(cx, arg0);
+            return (Boolean) Context.jsToJava(cx, invoke(thread, cx, args), boolean.class);
+        }
+
+        /**
+         * @return The script result converted to the given type, or null if the script returned nothing
+         */
+        @Nullable
+        public <T> T callAs(Class<T> resultType, Object arg0, Object arg1, Object arg2, Object arg3, Object arg4) {
+            final ThreadContexts thread = CONTEXTS.get();
+            final Context cx = thread.get(type);
+            final Object[] args = thread.pushArgs(5);
+            args[0] = wrap(cx, arg0);
+            args[1] = wrap(cx, arg1);
+            args[2] = wrap(cx, arg2);
+            args[3] = wrap(cx, arg3);
+            args[4] = wrap(cx, arg4);
+            final Object result = invoke(thread, cx, args);
+            if (result == null || Undefined.isUndefined(result)) {
+                return null;
+            }
+            return resultType.cast(Context.jsToJava(cx, result, resultType));
+        }
+
+        // Wraps arguments the same way Rhino's interface adapters do
+        private Object wrap(Context cx, Object arg) {
+            if (arg instanceof Reused reused) {
+                return reused.wrapperCache().wrap(cx, scope, arg);
+            }
+            return cx.getWrapFactory().wrap(cx, scope, arg, null);
+        }
+
+        private Object invoke(ThreadContexts thread, Context cx, Object[] args) {
+            try {
+                return function.call(cx, scope, scope, args);
+            } finally {
+                thread.popArgs(args);
+            }
+        }
+    }
+}
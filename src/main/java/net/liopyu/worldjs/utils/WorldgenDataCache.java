@@ -0,0 +1,229 @@
+package net.liopyu.worldjs.utils;
+
+import dev.latvian.mods.kubejs.KubeJSPaths;
+import net.liopyu.worldjs.WorldJS;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.fml.ModList;
+import net.minecraftforge.fml.loading.FMLPaths;
+import net.minecraftforge.forgespi.language.IModInfo;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An on-disk cache of the virtual pack entries generated by {@code WorldJSEvents.worldgenData}
+ * <br><br>
+ * The output is keyed by a hash of the server and startup scripts, {@code kubejs/config}, the loaded mods and their
+ * versions. Other files are only hashed if they are read while generating, such as imported tables or files a script
+ * marks with {@code event.trackFile}, as hashing every data pack and mod config on each reload would cost about as
+ * much as the cache saves. These are {@link Recorder#trackInput(Path) tracked} and re-hashed when the cache is read.
+ * Runs that reported script errors are never stored
+ * <br><br>
+ * When nothing changed, the stored entries are handed straight to the data pack and the event <b>isn't posted</b>, so
+ * nothing a handler does besides adding data happens on a cache hit, including side effects such as logging or setting
+ * global variables. Handlers of other scripts and addons listening to the event are skipped the same way
+ * <br><br>
+ * Scripts whose output isn't purely a function of these inputs (e.g. those using {@code Math.random()} or reading
+ * untracked configs) will keep their first output, so the cache is off unless enabled with
+ * {@code -Dworldjs.enableDataCache=true}. Clear it with {@code /worldjs cache clear}
+ */
+@ApiStatus.Internal
+public class WorldgenDataCache {
+
+    public static final boolean ENABLED = Boolean.getBoolean("worldjs.enableDataCache");
+
+    private static final int FORMAT = 3;
+    private static final Path DIRECTORY = FMLPaths.GAMEDIR.get().resolve("local").resolve(WorldJS.MODID);
+    private static final Path FILE = DIRECTORY.resolve("worldgen_data.cache");
+
+    /**
+     * @return A hash of everything the generated data is assumed to depend on, or null if it could not be computed
+     */
+    @Nullable
+    public static String computeKey() {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, "format:" + FORMAT);
+            ModList.get().getMods().stream()
+                    .sorted(Comparator.comparing(IModInfo::getModId))
+                    .forEach(mod -> update(digest, mod.getModId() + "@" + mod.getVersion()));
+            hashDirectory(digest, "startup_scripts", KubeJSPaths.STARTUP_SCRIPTS);
+            hashDirectory(digest, "server_scripts", KubeJSPaths.SERVER_SCRIPTS);
+            hashDirectory(digest, "kubejs_config", KubeJSPaths.CONFIG);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            WorldJS.LOGGER.warn("Unable to compute the WorldJS worldgen data cache key, caching is disabled for this reload", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return The cached entries for the given key, or null if there are none or any tracked input has changed
+     */
+    @Nullable
+    public static Map<ResourceLocation, String> load(String key) {
+        if (!Files.isRegularFile(FILE)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(FILE))))) {
+            if (in.readInt() != FORMAT || !key.equals(readString(in))) {
+                return null;
+            }
+            final int inputs = in.readInt();
+            for (int i = 0 ; i < inputs ; i++) {
+                final Path path = Path.of(readString(in));
+                final String hash = readString(in);
+                if (!hash.equals(hashFile(path))) {
+                    return null;
+                }
+            }
+            final int size = in.readInt();
+            final Map<ResourceLocation, String> entries = new LinkedHashMap<>(size * 4 / 3 + 1);
+            for (int i = 0 ; i < size ; i++) {
+                entries.put(new ResourceLocation(readString(in)), readString(in));
+            }
+            return entries;
+        } catch (IOException | RuntimeException e) {
+            WorldJS.LOGGER.warn("Unable to read the WorldJS worldgen data cache, regenerating", e);
+            return null;
+        }
+    }
+
+    public static void save(String key, Recorder recorder) {
+        try {
+            Files.createDirectories(DIRECTORY);
+            final Path temp = Files.createTempFile(DIRECTORY, "worldgen_data", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(FORMAT);
+                writeString(out, key);
+                out.writeInt(recorder.inputs.size());
+                for (Map.Entry<Path, String> input : recorder.inputs.entrySet()) {
+                    writeString(out, input.getKey().toString());
+                    writeString(out, input.getValue());
+                }
+                out.writeInt(recorder.entries.size());
+                for (Map.Entry<ResourceLocation, String> entry : recorder.entries.entrySet()) {
+                    writeString(out, entry.getKey().toString());
+                    writeString(out, entry.getValue());
+                }
+            }
+            Files.move(temp, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            WorldJS.LOGGER.warn("Unable to write the WorldJS worldgen data cache", e);
+        }
+    }
+
+    /**
+     * @return If there was a cache to delete
+     */
+    public static boolean clear() {
+        try {
+            return Files.deleteIfExists(FILE);
+        } catch (IOException e) {
+            WorldJS.LOGGER.warn("Unable to delete the WorldJS worldgen data cache", e);
+            return false;
+        }
+    }
+
+    /**
+     * Collects the entries and extra inputs of one run of the event
+     */
+    public static class Recorder {
+
+        private final Map<ResourceLocation, String> entries = new LinkedHashMap<>();
+        private final Map<Path, String> inputs = new LinkedHashMap<>();
+
+        /**
+         * @param content The entry as compact json
+         */
+        public void record(ResourceLocation file, String content) {
+            entries.put(file, content);
+        }
+
+        /**
+         * Marks a file as read during generation, so the cache is invalidated when it changes
+         */
+        public void trackInput(Path path) {
+            final Path absolute = path.toAbsolutePath().normalize();
+            if (!inputs.containsKey(absolute)) {
+                try {
+                    inputs.put(absolute, hashFile(absolute));
+                } catch (IOException e) {
+                    inputs.put(absolute, "");
+                }
+            }
+        }
+
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    private static void hashDirectory(MessageDigest digest, String name, Path directory) throws IOException {
+        update(digest, "directory:" + name);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        final List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.filter(Files::isRegularFile).forEach(files::add);
+        }
+        files.sort(Comparator.comparing(p -> directory.relativize(p).toString()));
+        for (Path file : files) {
+            update(digest, directory.relativize(file).toString());
+            digest.update(Files.readAllBytes(file));
+        }
+    }
+
+    private static String hashFile(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return "";
+        }
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(path)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String str) {
+        digest.update(str.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    // DataOutput#writeUTF is limited to 64kb, which large features can exceed
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        writeBytes(out, str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}